@@ -1,18 +1,27 @@
 package cc.tweaked.vanillaextract.core.download;
 
 import cc.tweaked.vanillaextract.core.util.MoreFiles;
+import cc.tweaked.vanillaextract.core.util.PathLock;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * A concrete implementation of {@link FileDownloader} which uses {@link HttpClient}.
@@ -20,6 +29,11 @@ import java.util.Objects;
 public class BasicFileDownloader implements FileDownloader {
     private static final Logger LOG = LoggerFactory.getLogger(BasicFileDownloader.class);
 
+    /**
+     * The default number of files a {@link Scope} will download at once.
+     */
+    public static final int DEFAULT_PARALLEL_DOWNLOADS = 4;
+
     private static final int MAX_RETRIES = 3;
     private static final Duration TIMEOUT = Duration.ofMinutes(1);
     private static final HttpClient CLIENT = HttpClient.newBuilder()
@@ -27,6 +41,26 @@ public class BasicFileDownloader implements FileDownloader {
         .connectTimeout(TIMEOUT)
         .build();
 
+    private final int parallelDownloads;
+
+    /**
+     * Construct a new file downloader, using the {@linkplain #DEFAULT_PARALLEL_DOWNLOADS default} number of parallel
+     * downloads.
+     */
+    public BasicFileDownloader() {
+        this(DEFAULT_PARALLEL_DOWNLOADS);
+    }
+
+    /**
+     * Construct a new file downloader.
+     *
+     * @param parallelDownloads The maximum number of files a {@link Scope} may download at once.
+     */
+    public BasicFileDownloader(int parallelDownloads) {
+        if (parallelDownloads < 1) throw new IllegalArgumentException("parallelDownloads must be positive");
+        this.parallelDownloads = parallelDownloads;
+    }
+
     @Override
     public void download(FileDownload download) throws DownloadException {
         downloadImpl(download);
@@ -34,10 +68,18 @@ public class BasicFileDownloader implements FileDownloader {
 
     @Override
     public Scope openScope() {
-        return new ScopeImpl();
+        return new ScopeImpl(parallelDownloads);
+    }
+
+    @Override
+    public @Nullable RemoteFile openRemote(FileDownload download) {
+        return download.size() >= 0 ? new RemoteFileImpl(download.uri(), download.size()) : null;
     }
 
     private static boolean canSkipDownload(FileDownload download) {
+        // If we know the expected size, check that first. This avoids hashing files which are obviously wrong.
+        if (download.size() >= 0 && getPartialSize(download.destination()) != download.size()) return false;
+
         if (download.sha1() != null) {
             var actualSha = MoreFiles.tryGetSha1(download.destination());
             return Objects.equals(download.sha1(), actualSha);
@@ -58,8 +100,25 @@ public class BasicFileDownloader implements FileDownloader {
             throw new DownloadException(download.uri(), "failed to create parent directory", e);
         }
 
+        // Only download the file from one thread or process at once. If someone else got there first, use their
+        // copy instead.
+        try (var lock = PathLock.acquire(download.destination())) {
+            if (canSkipDownload(download)) return;
+            downloadLocked(download);
+        } catch (DownloadException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new DownloadException(download.uri(), "cannot lock destination", e);
+        }
+    }
+
+    private static void downloadLocked(FileDownload download) throws DownloadException {
+        // If we're refreshing a file with no known hash, make the request conditional on it having changed.
+        var validators = download.sha1() == null && MoreFiles.exists(download.destination())
+            ? CacheValidators.read(download.destination()) : null;
+
         try (var tempFile = MoreFiles.scratch(download.destination())) {
-            downloadAndReplace(download, tempFile);
+            downloadAndReplace(download, tempFile, validators);
         } catch (DownloadException e) {
             throw e;
         } catch (IOException e) {
@@ -67,40 +126,95 @@ public class BasicFileDownloader implements FileDownloader {
         }
     }
 
-    private static void downloadAndReplace(FileDownload download, MoreFiles.ScratchFile scratch) throws DownloadException {
+    private static void downloadAndReplace(
+        FileDownload download, MoreFiles.ScratchFile scratch, @Nullable CacheValidators validators
+    ) throws DownloadException {
         LOG.info("Downloading {} to {}", download.uri(), scratch.destination());
 
-        var request = HttpRequest.newBuilder(download.uri()).timeout(TIMEOUT);
+        // Whether we can resume from a partial download. This is disabled if the server doesn't respect our range
+        // request, or the resumed file turned out to be corrupt.
+        boolean canResume = true;
+        // The validators of the response our partial download came from.
+        @Nullable CacheValidators partialValidators = null;
+        @Nullable CacheValidators newValidators;
+        String hash;
 
         for (int i = 1; ; i++) {
-            HttpResponse<?> response;
+            // Only resume if we can detect the file changing between attempts: either the server can tell us (using
+            // If-Range), or we can check the hash ourselves. Otherwise we might splice two different files together.
+            var ifRange = partialValidators == null ? null : partialValidators.getIfRange();
+            long offset = canResume && (ifRange != null || download.sha1() != null) ? getPartialSize(scratch.path()) : 0;
+
+            var request = HttpRequest.newBuilder(download.uri()).timeout(TIMEOUT);
+            if (offset > 0) {
+                LOG.info("Resuming download of {} from byte {}.", download.uri(), offset);
+                request.header("Range", "bytes=" + offset + "-");
+                if (ifRange != null) request.header("If-Range", ifRange);
+            } else if (validators != null) {
+                validators.addHeaders(request);
+            }
+
+            var handler = new ResumingBodyHandler(scratch.path(), offset, download.size(), partialValidators);
+            HttpResponse<String> response;
             try {
-                response = CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofFile(scratch.path()));
+                response = CLIENT.send(request.build(), handler);
             } catch (IOException e) {
-                throw new DownloadException(download.uri(), "download failed", e);
+                partialValidators = handler.getValidators();
+
+                if (handler.isTooLarge()) {
+                    throw new DownloadException(download.uri(), "file is larger than the expected " + download.size() + " bytes");
+                }
+
+                // Network errors are retried. Anything we managed to download is kept in the scratch file, so the
+                // next attempt can carry on from there.
+                if (i >= MAX_RETRIES) throw new DownloadException(download.uri(), "download failed", e);
+                LOG.info("Download of {} failed ({}). Retrying.", download.uri(), e.toString());
+                continue;
             } catch (InterruptedException e) {
                 throw new DownloadException(download.uri(), "download interrupted", e);
             }
 
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                // Ensure that the SHA matches.
+            var status = response.statusCode();
+            if (status == 304 && offset == 0 && validators != null) {
+                // The file hasn't changed, so keep our existing copy.
+                LOG.info("{} has not changed since it was last downloaded.", download.uri());
+                return;
+            }
+
+            if ((status == 206 && !isContinuation(response.headers(), offset)) || (status == 416 && offset > 0)) {
+                // The server returned a range we didn't ask for, or couldn't satisfy our range. Start again from the
+                // beginning of the file.
+                if (i >= MAX_RETRIES) throw new DownloadException(download.uri(), "cannot resume download (got " + response + ")");
+                LOG.info("Download of {} cannot be resumed (got {}). Retrying from the start.", download.uri(), status);
+                canResume = false;
+                continue;
+            }
+
+            if (status >= 200 && status < 300) {
+                // Ensure that the SHA matches. The hash is computed as the file is written, so we don't need to
+                // read it back from disk.
+                var actualHash = Objects.requireNonNull(response.body(), "Successful response has no hash");
                 if (download.sha1() != null) {
-                    String actualHash;
-                    try {
-                        actualHash = MoreFiles.computeSha1(scratch.path());
-                    } catch (IOException e) {
-                        throw new DownloadException(download.uri(), "Failed to compute hash", e);
-                    }
                     if (!Objects.equals(download.sha1(), actualHash)) {
+                        // If we resumed a download, it's possible our partial file was corrupted. Try once more
+                        // from a clean slate.
+                        if (offset > 0 && i < MAX_RETRIES) {
+                            LOG.warn("Resumed download of {} has the wrong hash. Retrying from the start.", download.uri());
+                            canResume = false;
+                            continue;
+                        }
+
                         throw new DownloadException(download.uri(), "expected " + download.sha1() + ", got " + actualHash);
                     }
                 }
 
+                hash = actualHash;
+                newValidators = handler.getValidators();
                 break;
             }
 
             // If we've got a 404, or have retried too many times then just abort.
-            if (i >= MAX_RETRIES || response.statusCode() == 404) {
+            if (i >= MAX_RETRIES || status == 404) {
                 throw new DownloadException(download.uri(), "got non-200 status code " + response);
             }
 
@@ -108,7 +222,7 @@ public class BasicFileDownloader implements FileDownloader {
             // otherwise try to download again.
             if (canSkipDownload(download)) return;
 
-            LOG.info("Download of {} returned {}. Retrying.", download.uri(), response.statusCode());
+            LOG.info("Download of {} returned {}. Retrying.", download.uri(), status);
         }
 
         try {
@@ -116,11 +230,145 @@ public class BasicFileDownloader implements FileDownloader {
         } catch (IOException e) {
             throw new DownloadException(download.uri(), "cannot replace existing file", e);
         }
+
+        // Cache the hash, so later calls to MoreFiles.getSha1 don't need to read the file again.
+        MoreFiles.setSha1(download.destination(), hash);
+
+        // Save the cache validators, so we can make a conditional request next time. Files with a known hash never
+        // need refreshing, so skip them.
+        if (download.sha1() == null) {
+            try {
+                CacheValidators.write(download.destination(), newValidators);
+            } catch (IOException e) {
+                LOG.warn("Cannot save cache headers for {}.", download.destination(), e);
+            }
+        }
+    }
+
+    private static long getPartialSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Determine whether a partial ({@code 206}) response starts at the offset we requested, such as where our existing
+     * file left off.
+     *
+     * @param headers The response headers.
+     * @param offset  The offset we requested.
+     * @return Whether the response's {@code Content-Range} starts at {@code offset}.
+     */
+    private static boolean isContinuation(HttpHeaders headers, long offset) {
+        return headers.firstValue("Content-Range")
+            .map(range -> range.trim().startsWith("bytes " + offset + "-"))
+            .orElse(false);
+    }
+
+    /**
+     * A {@link HttpResponse.BodyHandler} which writes to a file, appending to any existing contents if the server
+     * returned the range we asked for. The body of the response is the SHA1 hash of the resulting file, or
+     * {@code null} if the request was unsuccessful.
+     * <p>
+     * This also tracks the {@linkplain CacheValidators validators} of the response the file was started from, so we
+     * can make sure the file hasn't changed when resuming it again.
+     */
+    private static final class ResumingBodyHandler implements HttpResponse.BodyHandler<String> {
+        private final Path path;
+        private final long offset;
+        private final long maxSize;
+        private @Nullable CacheValidators validators;
+        private @Nullable DigestingFileSubscriber subscriber;
+
+        /**
+         * Construct a new body handler.
+         *
+         * @param path       The path to write to.
+         * @param offset     The size of the existing partial file.
+         * @param maxSize    The expected size of the file, or {@code -1} if unknown.
+         * @param validators The validators of the response the existing partial file came from.
+         */
+        private ResumingBodyHandler(Path path, long offset, long maxSize, @Nullable CacheValidators validators) {
+            this.path = path;
+            this.offset = offset;
+            this.maxSize = maxSize;
+            this.validators = validators;
+        }
+
+        /**
+         * Get the validators of the response the file was started from. This is either the current response (if it
+         * replaced the file), or the one passed to the constructor.
+         *
+         * @return The file's validators, or {@code null} if unknown.
+         */
+        @Nullable
+        CacheValidators getValidators() {
+            return validators;
+        }
+
+        boolean isTooLarge() {
+            return subscriber != null && subscriber.isTooLarge();
+        }
+
+        @Override
+        public HttpResponse.BodySubscriber<String> apply(HttpResponse.ResponseInfo info) {
+            var status = info.statusCode();
+            if (status == 206) {
+                return isContinuation(info.headers(), offset)
+                    ? subscriber = new DigestingFileSubscriber(path, true, maxSize)
+                    : HttpResponse.BodySubscribers.replacing(null);
+            } else if (status >= 200 && status < 300) {
+                validators = CacheValidators.fromHeaders(info.headers());
+                return subscriber = new DigestingFileSubscriber(path, false, maxSize);
+            } else {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+        }
+    }
+
+    private record RemoteFileImpl(URI uri, long size) implements RemoteFile {
+        @Override
+        public InputStream read(long offset, long length) throws DownloadException {
+            if (offset < 0 || length <= 0 || offset + length > size) {
+                throw new IllegalArgumentException("Invalid range " + offset + "+" + length + " for file of size " + size);
+            }
+
+            LOG.debug("Reading bytes {}-{} of {}", offset, offset + length - 1, uri);
+            var request = HttpRequest.newBuilder(uri).timeout(TIMEOUT)
+                .header("Range", "bytes=" + offset + "-" + (offset + length - 1))
+                .build();
+
+            HttpResponse<InputStream> response;
+            try {
+                response = CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (IOException e) {
+                throw new DownloadException(uri, "download failed", e);
+            } catch (InterruptedException e) {
+                throw new DownloadException(uri, "download interrupted", e);
+            }
+
+            if (response.statusCode() != 206 || !isContinuation(response.headers(), offset)) {
+                try {
+                    response.body().close();
+                } catch (IOException ignored) {
+                }
+                throw new DownloadException(uri, "server does not support range requests (got " + response + ")");
+            }
+
+            return response.body();
+        }
     }
 
     private static class ScopeImpl implements Scope {
+        private final int parallelDownloads;
         private final List<FileDownload> downloads = new ArrayList<>();
 
+        private ScopeImpl(int parallelDownloads) {
+            this.parallelDownloads = parallelDownloads;
+        }
+
         @Override
         public void download(FileDownload download) {
             downloads.add(download);
@@ -128,8 +376,44 @@ public class BasicFileDownloader implements FileDownloader {
 
         @Override
         public void close() throws DownloadException {
-            // TODO: Do these in parallel.
-            for (var download : downloads) downloadImpl(download);
+            if (downloads.size() <= 1 || parallelDownloads <= 1) {
+                for (var download : downloads) downloadImpl(download);
+                return;
+            }
+
+            // Run each download on its own virtual thread, using a semaphore to limit how many run at once. Closing
+            // the executor waits for all downloads to finish.
+            var permits = new Semaphore(parallelDownloads);
+            List<Future<?>> tasks = new ArrayList<>(downloads.size());
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (var download : downloads) {
+                    tasks.add(executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            downloadImpl(download);
+                        } finally {
+                            permits.release();
+                        }
+                        return null;
+                    }));
+                }
+            }
+
+            // Then collect all failures into a single exception.
+            List<DownloadException> errors = new ArrayList<>(0);
+            for (int i = 0; i < tasks.size(); i++) {
+                var task = tasks.get(i);
+                switch (task.state()) {
+                    case SUCCESS -> {
+                    }
+                    case FAILED -> errors.add(task.exceptionNow() instanceof DownloadException e
+                        ? e : new DownloadException(downloads.get(i).uri(), "download failed", task.exceptionNow()));
+                    case CANCELLED, RUNNING ->
+                        errors.add(new DownloadException(downloads.get(i).uri(), "download interrupted"));
+                }
+            }
+
+            if (!errors.isEmpty()) throw DownloadException.combine(errors);
         }
     }
 }
@@ -0,0 +1,100 @@
+package cc.tweaked.vanillaextract.core.download;
+
+import cc.tweaked.vanillaextract.core.util.MoreFiles;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+
+/**
+ * The HTTP cache validators ({@code ETag} and {@code Last-Modified} headers) for a downloaded file.
+ * <p>
+ * These are stored next to the downloaded file, and used to make conditional requests when refreshing it. If the file
+ * has not changed, the server responds with {@code 304 Not Modified}, and we can skip downloading it again.
+ *
+ * @param etag         The file's {@code ETag}.
+ * @param lastModified The file's {@code Last-Modified} date.
+ */
+record CacheValidators(@Nullable String etag, @Nullable String lastModified) {
+    /**
+     * Read the validators from the response headers.
+     *
+     * @param headers The response headers.
+     * @return The validators, or {@code null} if the response has none.
+     */
+    static @Nullable CacheValidators fromHeaders(HttpHeaders headers) {
+        var etag = headers.firstValue("ETag").orElse(null);
+        var lastModified = headers.firstValue("Last-Modified").orElse(null);
+        return etag == null && lastModified == null ? null : new CacheValidators(etag, lastModified);
+    }
+
+    /**
+     * Get the path the validators for a file are stored at.
+     *
+     * @param file The downloaded file.
+     * @return The path to the validators.
+     */
+    static Path getLocation(Path file) {
+        return file.resolveSibling(file.getFileName() + ".headers.json");
+    }
+
+    /**
+     * Read the validators for a file.
+     *
+     * @param file The downloaded file.
+     * @return The validators, or {@code null} if they are missing or could not be read.
+     */
+    static @Nullable CacheValidators read(Path file) {
+        try {
+            return MoreFiles.readJson(getLocation(file), CacheValidators.class);
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Save the validators for a file, or delete them if the server did not send any.
+     *
+     * @param file       The downloaded file.
+     * @param validators The validators to write.
+     * @throws IOException If the validators could not be saved.
+     */
+    static void write(Path file, @Nullable CacheValidators validators) throws IOException {
+        var location = getLocation(file);
+        if (validators == null) {
+            MoreFiles.tryDelete(location);
+            return;
+        }
+
+        try (var scratch = MoreFiles.scratch(location)) {
+            MoreFiles.writeJson(scratch.path(), validators);
+            scratch.commit();
+        }
+    }
+
+    /**
+     * Add conditional headers to a request.
+     *
+     * @param request The request to add headers to.
+     */
+    void addHeaders(HttpRequest.Builder request) {
+        if (etag != null) request.header("If-None-Match", etag);
+        if (lastModified != null) request.header("If-Modified-Since", lastModified);
+    }
+
+    /**
+     * Get the value of the {@code If-Range} header, used to only resume a download if the file has not changed.
+     * <p>
+     * {@code If-Range} requires a strong validator, so weak {@code ETag}s are ignored in favour of the
+     * {@code Last-Modified} date.
+     *
+     * @return The {@code If-Range} value, or {@code null} if we have no suitable validator.
+     */
+    @Nullable
+    String getIfRange() {
+        return etag != null && !etag.startsWith("W/") ? etag : lastModified;
+    }
+}
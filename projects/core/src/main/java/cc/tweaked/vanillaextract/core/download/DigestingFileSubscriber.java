@@ -0,0 +1,149 @@
+package cc.tweaked.vanillaextract.core.download;
+
+import cc.tweaked.vanillaextract.core.util.MoreDigests;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link HttpResponse.BodySubscriber} which writes the response body to a file, computing its SHA1 hash as it goes.
+ * <p>
+ * This avoids having to read the file back from disk to verify it after it has been downloaded.
+ */
+final class DigestingFileSubscriber implements HttpResponse.BodySubscriber<String> {
+    private final Path path;
+    private final boolean append;
+    private final long maxSize;
+
+    private final MessageDigest digest = MoreDigests.createSha1();
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+
+    private @Nullable FileChannel channel;
+    private @Nullable Flow.Subscription subscription;
+    private long size;
+
+    /**
+     * Whether the response exceeded {@link #maxSize}. This is set on the HTTP client's thread, but read by whoever is
+     * waiting on the response.
+     */
+    private volatile boolean tooLarge;
+
+    /**
+     * Create a new subscriber.
+     *
+     * @param path    The path to write to.
+     * @param append  Whether to append to the existing file. The existing contents will be included in the hash.
+     * @param maxSize The maximum size of the file, or {@code -1} if unknown. If the file exceeds this size, the
+     *                download is aborted.
+     */
+    DigestingFileSubscriber(Path path, boolean append, long maxSize) {
+        this.path = path;
+        this.append = append;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Whether this download was aborted for exceeding the expected size.
+     *
+     * @return If the file was too large.
+     */
+    boolean isTooLarge() {
+        return tooLarge;
+    }
+
+    @Override
+    public CompletionStage<String> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+
+        try {
+            if (append) {
+                var channel = this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+                // Digest the existing contents, leaving the channel positioned at the end of the file.
+                var buffer = ByteBuffer.allocate(8192);
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+                size = channel.position();
+            } else {
+                channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+        } catch (IOException e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        var channel = this.channel;
+        var subscription = this.subscription;
+        if (channel == null || subscription == null) throw new IllegalStateException("onNext called before onSubscribe");
+
+        try {
+            for (var buffer : items) {
+                size += buffer.remaining();
+                if (maxSize >= 0 && size > maxSize) {
+                    tooLarge = true;
+                    throw new IOException("Response is larger than the expected " + maxSize + " bytes");
+                }
+
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+        } catch (IOException e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        result.complete(MoreDigests.toHexString(digest));
+    }
+
+    private void fail(Throwable throwable) {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            throwable.addSuppressed(e);
+        }
+
+        result.completeExceptionally(throwable);
+    }
+}
@@ -4,6 +4,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 /**
  * An exception that occurs when {@linkplain FileDownloader downloading a file}.
@@ -16,4 +17,26 @@ public class DownloadException extends IOException {
     public DownloadException(URI uri, String message, @Nullable Throwable cause) {
         super("Failed to download " + uri + ": " + message, cause);
     }
+
+    private DownloadException(String message) {
+        super(message);
+    }
+
+    /**
+     * Combine several download failures into a single exception.
+     * <p>
+     * If there is only one failure, it is returned as-is. Otherwise, we return a new exception, with each failure
+     * attached as a {@linkplain #getSuppressed() suppressed exception}.
+     *
+     * @param errors The list of failures. This must be non-empty.
+     * @return The combined exception.
+     */
+    public static DownloadException combine(List<DownloadException> errors) {
+        if (errors.isEmpty()) throw new IllegalArgumentException("Expected at least one error");
+        if (errors.size() == 1) return errors.get(0);
+
+        var exception = new DownloadException("Failed to download " + errors.size() + " files");
+        for (var error : errors) exception.addSuppressed(error);
+        return exception;
+    }
 }
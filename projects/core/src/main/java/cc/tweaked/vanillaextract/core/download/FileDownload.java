@@ -15,10 +15,23 @@ import java.util.Objects;
  * @param uri         The URI of the file to download.
  * @param destination The location the file should be downloaded to.
  * @param sha1        The expected hash of the file. This is used to avoid downloading the file again.
+ * @param size        The expected size of the file, or {@code -1} if unknown. Downloads larger than this are rejected.
  * @param force       Whether to force the file to be updated, even if it was downloaded recently.
  * @see FileDownloader
  */
-public record FileDownload(URI uri, Path destination, @Nullable String sha1, boolean force) {
+public record FileDownload(URI uri, Path destination, @Nullable String sha1, long size, boolean force) {
+    /**
+     * Create a new {@link FileDownload} with an unknown size.
+     *
+     * @param uri         The URI of the file to download.
+     * @param destination The location the file should be downloaded to.
+     * @param sha1        The expected hash of the file.
+     * @param force       Whether to force the file to be updated.
+     */
+    public FileDownload(URI uri, Path destination, @Nullable String sha1, boolean force) {
+        this(uri, destination, sha1, -1, force);
+    }
+
     /**
      * Create a new builder for {@link FileDownload}s.
      *
@@ -56,6 +69,7 @@ public record FileDownload(URI uri, Path destination, @Nullable String sha1, boo
         private final Path path;
 
         private @Nullable String sha1;
+        private long size = -1;
         private boolean force;
 
         private Builder(URI uri, Path path) {
@@ -76,7 +90,22 @@ public record FileDownload(URI uri, Path destination, @Nullable String sha1, boo
         }
 
         /**
-         * Always download this file, even if it already exists.
+         * Expect the file to have a specific size. This allows us to abort downloads early if the file is larger than
+         * expected.
+         *
+         * @param size The expected size of the file, in bytes.
+         * @return {@code this}, for chaining.
+         */
+        public Builder expectSize(long size) {
+            if (size < 0) throw new IllegalArgumentException("Size cannot be negative");
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Always check for a new version of this file, even if it already exists.
+         * <p>
+         * If the server supports conditional requests, the file is only downloaded again if it has changed.
          *
          * @return {@code this}, for chaining.
          */
@@ -91,7 +120,7 @@ public record FileDownload(URI uri, Path destination, @Nullable String sha1, boo
          * @return The resulting {@link FileDownload}.
          */
         public FileDownload build() {
-            return new FileDownload(uri, path, sha1, force);
+            return new FileDownload(uri, path, sha1, size, force);
         }
 
         /**
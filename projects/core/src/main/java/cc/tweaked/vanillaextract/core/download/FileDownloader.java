@@ -1,5 +1,7 @@
 package cc.tweaked.vanillaextract.core.download;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.IOException;
 
 /**
@@ -25,6 +27,19 @@ public interface FileDownloader {
      */
     Scope openScope();
 
+    /**
+     * Open a file for reading individual byte ranges, rather than downloading the whole file.
+     * <p>
+     * This is used to extract a small part of a larger file. Callers should fall back to {@linkplain #download(FileDownload)
+     * downloading} the file if this is not supported, or reading the file fails.
+     *
+     * @param download The file to open. This should have a known {@linkplain FileDownload#size() size}.
+     * @return The remote file, or {@code null} if this downloader does not support partial reads.
+     */
+    default @Nullable RemoteFile openRemote(FileDownload download) {
+        return null;
+    }
+
     /**
      * A scope for scheduling several parallel downloads.
      */
@@ -0,0 +1,36 @@
+package cc.tweaked.vanillaextract.core.download;
+
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * A remote file which supports reading arbitrary byte ranges, without downloading the whole file.
+ *
+ * @see FileDownloader#openRemote(FileDownload)
+ * @see RemoteZipFile
+ */
+public interface RemoteFile {
+    /**
+     * The URI of this file.
+     *
+     * @return This file's URI.
+     */
+    URI uri();
+
+    /**
+     * The total size of this file.
+     *
+     * @return The size of this file, in bytes.
+     */
+    long size();
+
+    /**
+     * Read a range of bytes from this file.
+     *
+     * @param offset The offset to start reading from.
+     * @param length The number of bytes to read.
+     * @return A stream of the requested bytes. This should be closed once finished with.
+     * @throws DownloadException If the range could not be fetched.
+     */
+    InputStream read(long offset, long length) throws DownloadException;
+}
@@ -0,0 +1,195 @@
+package cc.tweaked.vanillaextract.core.download;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads individual entries from a zip file on a remote server, using {@linkplain RemoteFile range requests}.
+ * <p>
+ * Opening the zip reads the end of central directory record and the central directory. Each entry can then be read
+ * with two further requests (one for the local header, one for the data), without downloading the rest of the archive.
+ * <p>
+ * This only supports the subset of the zip format used by Minecraft's jars: Zip64 archives and compression methods
+ * other than stored or deflated are rejected.
+ */
+public final class RemoteZipFile {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private final RemoteFile file;
+    private final Map<String, Entry> entries;
+
+    private RemoteZipFile(RemoteFile file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * An entry in a remote zip file.
+     *
+     * @param name              The name of this entry.
+     * @param method            The compression method of this entry.
+     * @param compressedSize    The size of this entry's data within the zip.
+     * @param size              The uncompressed size of this entry.
+     * @param localHeaderOffset The offset of this entry's local header within the zip.
+     */
+    public record Entry(String name, int method, long compressedSize, long size, long localHeaderOffset) {
+    }
+
+    /**
+     * Open a remote zip file, reading its central directory.
+     *
+     * @param file The remote file to read.
+     * @return The opened zip file.
+     * @throws IOException If the zip file could not be read, or is not a zip we support.
+     */
+    public static RemoteZipFile open(RemoteFile file) throws IOException {
+        // Read enough of the end of the file to find the end of central directory record. In practice, jars don't
+        // have comments, so this is normally just a single request, which also includes the central directory.
+        var tailSize = (int) Math.min(file.size(), END_HEADER_SIZE + MAX_COMMENT_SIZE);
+        var tailOffset = file.size() - tailSize;
+        var tail = readFully(file, tailOffset, tailSize);
+
+        var end = findEndHeader(tail);
+        if (end < 0) throw new ZipException("Cannot find end of central directory in " + file.uri());
+
+        var count = Short.toUnsignedInt(tail.getShort(end + 10));
+        var directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        var directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("Zip64 files are not supported (" + file.uri() + ")");
+        }
+        if (directoryOffset + directorySize > tailOffset + end) {
+            throw new ZipException("Invalid central directory in " + file.uri());
+        }
+
+        ByteBuffer directory;
+        if (directoryOffset >= tailOffset) {
+            directory = tail.slice((int) (directoryOffset - tailOffset), (int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+        } else {
+            directory = readFully(file, directoryOffset, (int) directorySize);
+        }
+
+        Map<String, Entry> entries = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            var start = directory.position();
+            if (directory.remaining() < CENTRAL_HEADER_SIZE || directory.getInt(start) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry in " + file.uri());
+            }
+
+            var method = Short.toUnsignedInt(directory.getShort(start + 10));
+            var compressedSize = Integer.toUnsignedLong(directory.getInt(start + 20));
+            var size = Integer.toUnsignedLong(directory.getInt(start + 24));
+            var nameLength = Short.toUnsignedInt(directory.getShort(start + 28));
+            var extraLength = Short.toUnsignedInt(directory.getShort(start + 30));
+            var commentLength = Short.toUnsignedInt(directory.getShort(start + 32));
+            var localHeaderOffset = Integer.toUnsignedLong(directory.getInt(start + 42));
+
+            var name = new byte[nameLength];
+            directory.get(start + CENTRAL_HEADER_SIZE, name);
+
+            var entry = new Entry(new String(name, StandardCharsets.UTF_8), method, compressedSize, size, localHeaderOffset);
+            entries.put(entry.name(), entry);
+
+            directory.position(start + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength);
+        }
+
+        return new RemoteZipFile(file, Map.copyOf(entries));
+    }
+
+    /**
+     * Get an entry in this zip file.
+     *
+     * @param name The name of the entry.
+     * @return The entry, or {@code null} if not present.
+     */
+    public @Nullable Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Read the contents of an entry.
+     *
+     * @param entry The entry to read.
+     * @return A stream of the (uncompressed) entry. This should be closed once finished with.
+     * @throws IOException If the entry could not be read.
+     */
+    public InputStream getInputStream(Entry entry) throws IOException {
+        // The local header's name and extra fields may differ from the central directory, so we need to read it to find
+        // where the data starts.
+        var header = readFully(file, entry.localHeaderOffset(), LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + entry.name() + " in " + file.uri());
+        }
+
+        var dataOffset = entry.localHeaderOffset() + LOCAL_HEADER_SIZE
+            + Short.toUnsignedInt(header.getShort(26)) + Short.toUnsignedInt(header.getShort(28));
+        var stream = file.read(dataOffset, entry.compressedSize());
+
+        return switch (entry.method()) {
+            case METHOD_STORED -> stream;
+            case METHOD_DEFLATED -> new InflatingInputStream(stream);
+            default -> {
+                stream.close();
+                throw new ZipException("Unsupported compression method " + entry.method() + " for " + entry.name());
+            }
+        };
+    }
+
+    private static int findEndHeader(ByteBuffer buffer) {
+        for (int i = buffer.limit() - END_HEADER_SIZE; i >= 0; i--) {
+            if (buffer.getInt(i) == END_HEADER_SIGNATURE) return i;
+        }
+        return -1;
+    }
+
+    private static ByteBuffer readFully(RemoteFile file, long offset, int length) throws IOException {
+        byte[] bytes;
+        try (var stream = file.read(offset, length)) {
+            bytes = stream.readNBytes(length);
+        }
+        if (bytes.length != length) throw new ZipException("Unexpected end of file reading " + file.uri());
+
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * An {@link InflaterInputStream} for raw deflate data, which releases its inflater when closed.
+     */
+    private static final class InflatingInputStream extends InflaterInputStream {
+        InflatingInputStream(InputStream stream) {
+            // The inflater may need an extra "dummy" byte at the end of raw deflate streams, so provide one.
+            super(new SequenceInputStream(stream, new ByteArrayInputStream(new byte[1])), new Inflater(true));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cc.tweaked.vanillaextract.core.inputs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link InputCollector} which computes its inputs in parallel.
+ * <p>
+ * Files added with {@link #addInput(Path, FileFingerprint.Provider)} are fingerprinted in the background. Once all
+ * inputs have been added, they can be passed to another collector (such as a {@link HashingInputCollector}) with
+ * {@link #addTo(InputCollector)}. Inputs are always passed on in the order they were added, rather than the order they
+ * finished, so the resulting digest is stable.
+ */
+public final class ConcurrentInputCollector implements InputCollector {
+    private final Executor executor;
+    private final List<CompletableFuture<? extends BuildInput>> inputs = new ArrayList<>();
+
+    /**
+     * Construct a new input collector.
+     *
+     * @param executor The executor to fingerprint files on.
+     */
+    public ConcurrentInputCollector(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Fingerprint a file in the background, and add it as an input.
+     *
+     * @param path        The file to fingerprint.
+     * @param fingerprint The function used to fingerprint the file.
+     * @return The pending fingerprint. Use {@link #join(Future)} to wait for it.
+     */
+    public CompletableFuture<FileFingerprint> addInput(Path path, FileFingerprint.Provider fingerprint) {
+        var future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return fingerprint.snapshot(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+        inputs.add(future);
+        return future;
+    }
+
+    @Override
+    public void addInput(BuildInput input) {
+        inputs.add(CompletableFuture.completedFuture(input));
+    }
+
+    @Override
+    public void addInputDigest(String digest) {
+        addInput(new Digest(digest));
+    }
+
+    /**
+     * Wait for all inputs to be computed, and then add them to another collector.
+     *
+     * @param collector The collector to add our inputs to.
+     * @throws IOException If any input could not be computed.
+     */
+    public void addTo(InputCollector collector) throws IOException {
+        for (var pending : inputs) {
+            var input = join(pending);
+            if (input instanceof Digest(var digest)) {
+                collector.addInputDigest(digest);
+            } else {
+                collector.addInput(input);
+            }
+        }
+    }
+
+    /**
+     * Wait for a pending input to be computed.
+     *
+     * @param future The pending input.
+     * @param <T>    The type of the input.
+     * @return The computed input.
+     * @throws IOException If the input could not be computed.
+     */
+    public static <T> T join(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException("Failed to compute input", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while computing inputs");
+        }
+    }
+
+    private record Digest(String digest) implements BuildInput {
+        @Override
+        public void addInputs(InputCollector collector) {
+            collector.addInputDigest(digest);
+        }
+
+        @Override
+        public String toString() {
+            return digest;
+        }
+    }
+}
@@ -3,8 +3,20 @@ package cc.tweaked.vanillaextract.core.inputs;
 import cc.tweaked.vanillaextract.core.util.MoreDigests;
 import cc.tweaked.vanillaextract.core.util.MoreFiles;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 /**
  * A path of a file, along with some hash/digest/checksum.
@@ -17,17 +29,50 @@ import java.nio.file.Path;
  * @see InputCollector
  */
 public record FileFingerprint(Path path, String digest) implements BuildInput {
+    private static final Duration RACY_WINDOW = Duration.ofSeconds(2);
+    private static final ConcurrentMap<Path, CachedDigest> defaultCache = new ConcurrentHashMap<>();
+
     /**
      * Create a new {@link FileFingerprint} with the default digest algorithm.
+     * <p>
+     * This uses a fast, non-cryptographic hash ({@linkplain MoreDigests#createMurmur3() MurmurHash3}). Digests are also
+     * cached in memory, and reused while the file's size, modification time and file key are unchanged. This means
+     * fingerprinting the same inputs each time the build is configured is almost free.
      *
      * @param path The file's path.
      * @return The file fingerprint.
      * @throws IOException If the hash could not be computed.
      */
     public static FileFingerprint createDefault(Path path) throws IOException {
-        var digest = MoreDigests.createMd5();
-        MoreDigests.digestFile(digest, path);
-        return new FileFingerprint(path, MoreDigests.toHexString(digest));
+        var key = path.toAbsolutePath().normalize();
+        var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+        var cached = defaultCache.get(key);
+        if (cached != null && cached.matches(attributes)) return new FileFingerprint(path, cached.digest());
+
+        var fingerprint = create(path, MoreDigests::createMurmur3);
+
+        // If the file was modified very recently, it could be changed again without its modification time changing.
+        // Don't cache it, to be safe.
+        if (attributes.lastModifiedTime().toInstant().isBefore(Instant.now().minus(RACY_WINDOW))) {
+            defaultCache.put(key, new CachedDigest(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey(), fingerprint.digest()));
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Create a new {@link FileFingerprint} with a specific digest algorithm.
+     *
+     * @param path   The file's path.
+     * @param digest A function to create the digest.
+     * @return The file fingerprint.
+     * @throws IOException If the hash could not be computed.
+     */
+    public static FileFingerprint create(Path path, Supplier<MessageDigest> digest) throws IOException {
+        var messageDigest = digest.get();
+        MoreDigests.digestFile(path, messageDigest);
+        return new FileFingerprint(path, MoreDigests.toHexString(messageDigest));
     }
 
     /**
@@ -51,6 +96,21 @@ public record FileFingerprint(Path path, String digest) implements BuildInput {
         return path + " (" + digest + ")";
     }
 
+    /**
+     * A digest computed by {@link #createDefault(Path)}, along with the file metadata at the time.
+     *
+     * @param size     The file's size.
+     * @param modified The file's modification time.
+     * @param fileKey  The file's {@linkplain BasicFileAttributes#fileKey() file key}.
+     * @param digest   The file's digest.
+     */
+    private record CachedDigest(long size, FileTime modified, @Nullable Object fileKey, String digest) {
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && modified.equals(attributes.lastModifiedTime())
+                && Objects.equals(fileKey, attributes.fileKey());
+        }
+    }
+
     /**
      * A function to capture a file fingerprint from a path.
      *
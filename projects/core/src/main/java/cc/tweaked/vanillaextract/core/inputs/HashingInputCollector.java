@@ -7,9 +7,7 @@ import org.slf4j.LoggerFactory;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Deque;
-import java.util.List;
 
 /**
  * A {@link InputCollector} which accumulates inputs as a hash.
@@ -19,7 +17,7 @@ public final class HashingInputCollector implements InputCollector {
 
     private final String name;
     private final MessageDigest messageDigest = MoreDigests.createMd5();
-    private final Deque<DigestTrace> traceStack = new ArrayDeque<>();
+    private final Deque<InputTrace> traceStack = new ArrayDeque<>();
 
     /**
      * Construct a new input collector.
@@ -28,14 +26,15 @@ public final class HashingInputCollector implements InputCollector {
      */
     public HashingInputCollector(String name) {
         this.name = name;
-        this.traceStack.addLast(new DigestTrace(name));
+        this.traceStack.addLast(new InputTrace(name));
     }
 
     @Override
     public void addInput(BuildInput input) {
         LOG.info("Adding {} as input to {}", input, name);
 
-        var trace = new DigestTrace(input.toString());
+        // The digests are already stored in the trace, so just use the path for files.
+        var trace = new InputTrace(input instanceof FileFingerprint file ? file.path().toString() : input.toString());
         traceStack.addLast(trace);
 
         InputCollector.super.addInput(input);
@@ -52,9 +51,16 @@ public final class HashingInputCollector implements InputCollector {
 
     @Override
     public String toString() {
-        var builder = new StringBuilder();
-        traceStack.getFirst().toString(builder, 0);
-        return builder.toString();
+        return getTrace().toString();
+    }
+
+    /**
+     * Get a trace of all inputs added to this collector.
+     *
+     * @return The input trace.
+     */
+    public InputTrace getTrace() {
+        return traceStack.getFirst();
     }
 
     /**
@@ -65,27 +71,4 @@ public final class HashingInputCollector implements InputCollector {
     public String getDigest() {
         return MoreDigests.toHexString(messageDigest);
     }
-
-    private record DigestTrace(
-        String name,
-        List<DigestTrace> children,
-        List<String> digests
-    ) {
-        DigestTrace(String name) {
-            this(name, new ArrayList<>(0), new ArrayList<>(0));
-        }
-
-        void toString(StringBuilder out, int indent) {
-            out.append(" ".repeat(indent)).append(name);
-            if (children.isEmpty() && digests.isEmpty()) {
-                out.append(" - (empty)\n");
-            } else if (children.isEmpty() && digests.size() == 1) {
-                out.append(" - ").append(digests.get(0)).append("\n");
-            } else {
-                out.append(":\n");
-                for (var digest : digests) out.append(" ".repeat(indent)).append(" - ").append(digest).append("\n");
-                for (var child : children) child.toString(out, indent + 2);
-            }
-        }
-    }
 }
@@ -0,0 +1,188 @@
+package cc.tweaked.vanillaextract.core.inputs;
+
+import cc.tweaked.vanillaextract.core.util.MoreFiles;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A tree of inputs added to a {@link HashingInputCollector}, and the digests they contributed.
+ * <p>
+ * Traces are saved next to cached artifacts. When an artifact is rebuilt, its trace is also
+ * {@linkplain #record(Path, String, InputTrace) recorded} to a directory owned by whoever requested it (such as a Gradle
+ * project). This allows us to {@linkplain #diff(InputTrace) compare} the latest trace with the previous one, and so
+ * explain why an artifact was rebuilt.
+ *
+ * @param name     The name of this input.
+ * @param children Any nested inputs.
+ * @param digests  The digests added directly by this input.
+ * @see HashingInputCollector#getTrace()
+ */
+public record InputTrace(String name, List<InputTrace> children, List<String> digests) {
+    private static final Logger LOG = LoggerFactory.getLogger(InputTrace.class);
+
+    InputTrace(String name) {
+        this(name, new ArrayList<>(0), new ArrayList<>(0));
+    }
+
+    /**
+     * Read a trace from a file.
+     *
+     * @param path The path to read from.
+     * @return The trace, or {@code null} if it does not exist or could not be read.
+     */
+    public static @Nullable InputTrace read(Path path) {
+        if (!MoreFiles.exists(path)) return null;
+        try {
+            return MoreFiles.readJson(path, InputTrace.class);
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write this trace to a file.
+     *
+     * @param path The path to write to.
+     * @throws IOException If the file could not be written.
+     */
+    public void write(Path path) throws IOException {
+        MoreFiles.createParentDirectories(path);
+        try (var scratch = MoreFiles.scratch(path)) {
+            MoreFiles.writeJson(scratch.path(), this);
+            scratch.commit();
+        }
+    }
+
+    /**
+     * Record the trace for the current build, moving the existing trace to the {@linkplain #getPreviousLocation(Path)
+     * previous location} if it is different.
+     *
+     * @param latest The location of the latest trace.
+     * @param trace  The current trace.
+     */
+    public static void record(Path latest, InputTrace trace) {
+        var existing = read(latest);
+        if (trace.equals(existing)) return;
+
+        try {
+            if (existing != null) MoreFiles.replace(latest, getPreviousLocation(latest));
+            trace.write(latest);
+        } catch (IOException e) {
+            LOG.warn("Failed to record input trace to {}.", latest, e);
+        }
+    }
+
+    /**
+     * Record the trace for a rebuilt artifact.
+     *
+     * @param directory The directory to record traces to, or {@code null} to not record anything.
+     * @param artifact  The kind of artifact that was rebuilt.
+     * @param trace     The artifact's trace.
+     * @see #getLatestLocation(Path, String)
+     */
+    public static void record(@Nullable Path directory, String artifact, InputTrace trace) {
+        if (directory != null) record(getLatestLocation(directory, artifact), trace);
+    }
+
+    /**
+     * Get the location of the latest trace for an artifact.
+     *
+     * @param directory The directory traces are recorded to.
+     * @param artifact  The kind of artifact.
+     * @return The location of the latest trace.
+     * @see #record(Path, String, InputTrace)
+     */
+    public static Path getLatestLocation(Path directory, String artifact) {
+        return directory.resolve(artifact + ".trace.json");
+    }
+
+    /**
+     * Get the location of the trace that preceded the one at {@code latest}.
+     *
+     * @param latest The location of the latest trace.
+     * @return The location of the previous trace.
+     * @see #record(Path, InputTrace)
+     */
+    public static Path getPreviousLocation(Path latest) {
+        return MoreFiles.addSuffix(latest, ".previous");
+    }
+
+    /**
+     * Compare this trace against an older version, listing every input whose digests changed.
+     *
+     * @param previous The previous trace.
+     * @return A human-readable description of each changed input. This is empty if the traces are the same.
+     */
+    public List<String> diff(InputTrace previous) {
+        List<String> changes = new ArrayList<>();
+        diff(previous, this, "", changes);
+        return changes;
+    }
+
+    private static void diff(InputTrace previous, InputTrace current, String parent, List<String> changes) {
+        var path = parent.isEmpty() ? current.name() : parent + " > " + current.name();
+
+        if (!Objects.equals(previous.digests(), current.digests())) {
+            var name = previous.name().equals(current.name()) ? path : path + " (was " + previous.name() + ")";
+            changes.add(name + ": " + previous.digests() + " -> " + current.digests());
+        }
+
+        // Match up children by name, so adding or removing one input doesn't affect its siblings. Children with the
+        // same name are matched in order.
+        Map<String, Deque<InputTrace>> previousChildren = new HashMap<>();
+        for (var child : previous.children()) {
+            previousChildren.computeIfAbsent(child.name(), k -> new ArrayDeque<>()).add(child);
+        }
+
+        for (var child : current.children()) {
+            var matching = previousChildren.get(child.name());
+            var match = matching == null ? null : matching.poll();
+            if (match == null) {
+                changes.add(path + " > " + child.name() + ": added");
+            } else {
+                diff(match, child, path, changes);
+            }
+        }
+
+        // Any remaining children were removed.
+        for (var child : previous.children()) {
+            var remaining = previousChildren.get(child.name());
+            if (remaining.peek() == child) {
+                remaining.poll();
+                changes.add(path + " > " + child.name() + ": removed");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder();
+        toString(builder, 0);
+        return builder.toString();
+    }
+
+    private void toString(StringBuilder out, int indent) {
+        out.append(" ".repeat(indent)).append(name);
+        if (children.isEmpty() && digests.isEmpty()) {
+            out.append(" - (empty)\n");
+        } else if (children.isEmpty() && digests.size() == 1) {
+            out.append(" - ").append(digests.get(0)).append("\n");
+        } else {
+            out.append(":\n");
+            for (var digest : digests) out.append(" ".repeat(indent)).append(" - ").append(digest).append("\n");
+            for (var child : children) child.toString(out, indent + 2);
+        }
+    }
+}
@@ -2,13 +2,16 @@ package cc.tweaked.vanillaextract.core.mappings;
 
 import cc.tweaked.vanillaextract.core.inputs.FileFingerprint;
 import cc.tweaked.vanillaextract.core.inputs.HashingInputCollector;
+import cc.tweaked.vanillaextract.core.inputs.InputTrace;
 import cc.tweaked.vanillaextract.core.util.MoreFiles;
+import cc.tweaked.vanillaextract.core.util.PathLock;
 import net.fabricmc.mappingio.MappingReader;
 import net.fabricmc.mappingio.MappingVisitor;
 import net.fabricmc.mappingio.MappingWriter;
 import net.fabricmc.mappingio.format.MappingFormat;
 import net.fabricmc.mappingio.tree.MappingTreeView;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -26,6 +29,11 @@ import java.util.zip.GZIPOutputStream;
  * process, we need to be able to serialise the mappings - it's much easier to do that with a file
  */
 public final class MappingsFileProvider {
+    /**
+     * The name of the {@linkplain InputTrace#getLatestLocation(Path, String) recorded input trace} for the mappings.
+     */
+    public static final String TRACE = "mappings";
+
     private final Path cache;
 
     /**
@@ -40,36 +48,44 @@ public final class MappingsFileProvider {
     /**
      * Save the resolved mappings to a file.
      *
-     * @param version  The current Minecraft version.
-     * @param mappings The mappings to save.
+     * @param version        The current Minecraft version.
+     * @param mappings       The mappings to save.
+     * @param traceDirectory The directory to {@linkplain InputTrace#record(Path, String, InputTrace) record} an input
+     *                       trace to if the mappings are rewritten, or {@code null}.
      * @return The location the mappings were saved to.
      * @throws IOException If we failed to save the mappings.
      */
-    public FileFingerprint saveMappings(String version, ResolvedMappings mappings) throws IOException {
+    public FileFingerprint saveMappings(String version, ResolvedMappings mappings, @Nullable Path traceDirectory) throws IOException {
         var inputs = new HashingInputCollector("Mappings");
         inputs.addInput(mappings);
         var hash = inputs.getDigest();
 
         var path = cache.resolve(version).resolve("mappings").resolve(hash + ".tiny.gz");
         if (!MoreFiles.exists(path)) {
-            var mappingTree = new MemoryMappingTree();
-            mappings.accept(mappingTree);
-
-            Files.createDirectories(path.getParent());
-            try (var scratch = MoreFiles.scratch(path)) {
-                writeMappings(scratch.path(), mappingTree);
-                scratch.commit();
-            }
-
-            try (var scratch = MoreFiles.scratch(path.resolveSibling(hash + ".log"))) {
-                Files.writeString(scratch.path(), inputs.toString());
-                scratch.commit();
+            try (var lock = PathLock.acquire(path)) {
+                if (!MoreFiles.exists(path)) {
+                    writeMappings(path, hash, mappings, inputs);
+                    InputTrace.record(traceDirectory, TRACE, inputs.getTrace());
+                }
             }
         }
 
         return new FileFingerprint(path, hash);
     }
 
+    private static void writeMappings(Path path, String hash, ResolvedMappings mappings, HashingInputCollector inputs) throws IOException {
+        var mappingTree = new MemoryMappingTree();
+        mappings.accept(mappingTree);
+
+        Files.createDirectories(path.getParent());
+        try (var scratch = MoreFiles.scratch(path)) {
+            writeMappings(scratch.path(), mappingTree);
+            scratch.commit();
+        }
+
+        inputs.getTrace().write(path.resolveSibling(hash + ".trace.json"));
+    }
+
     /**
      * Write mappings to a file.
      * <p>
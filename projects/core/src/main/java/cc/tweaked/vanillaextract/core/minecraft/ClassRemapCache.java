@@ -0,0 +1,504 @@
+package cc.tweaked.vanillaextract.core.minecraft;
+
+import cc.tweaked.vanillaextract.core.util.MoreDigests;
+import cc.tweaked.vanillaextract.core.util.MoreFiles;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A content-addressed cache of remapped classes, shared between all Minecraft versions.
+ * <p>
+ * Many classes are unchanged between Minecraft releases. Rather than remapping the whole game each time, we store each
+ * remapped class under a key derived from its original bytes and every mapping which could affect it. Only classes
+ * missing from the cache then need to be passed to the remapper.
+ * <p>
+ * A class's remapped form depends on:
+ * <ul>
+ *     <li>Its own bytes, and its own mappings (including parameter and local variable names).</li>
+ *     <li>The names of every class it references, and the names of any members it references. As member mappings are
+ *     inherited, this also includes the members of each referenced class's supertypes.</li>
+ * </ul>
+ * <p>
+ * Rather than finding the exact set of referenced classes, we treat every string in the class's constant pool which
+ * names (or contains a descriptor naming) a known class as a reference. This may include more classes than strictly
+ * necessary, which just results in a few more cache misses.
+ * <p>
+ * Classes are written to the cache in the background, so remapping is not held up by creating thousands of small
+ * files. Call {@link #flush()} (or {@link #close()}) before reading back classes which were just added. This also
+ * reports any classes which could not be written.
+ * <p>
+ * The cache lives in {@code remapped-classes} in the global cache directory, and grows with every version and set of
+ * mappings. Classes which have not been used for {@link #MAX_AGE} are removed by {@link #evict()}. The directory can
+ * also be deleted at any time (or ignored with {@code --refresh-dependencies}), at the cost of a slower remap next time.
+ */
+final class ClassRemapCache implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(ClassRemapCache.class);
+
+    /**
+     * The version of the cache. This should be bumped whenever the format, or how classes are remapped, changes.
+     */
+    private static final String FORMAT = "1";
+
+    private static final int CONSTANT_UTF8 = 1;
+
+    /**
+     * How long a class may go unused before it is {@linkplain #evict() evicted} from the cache.
+     */
+    static final Duration MAX_AGE = Duration.ofDays(30);
+
+    /**
+     * The number of threads to write classes to the cache with.
+     */
+    private static final int WRITE_THREADS = 4;
+
+    private final Path root;
+    private final boolean refresh;
+
+    private final ExecutorService writer = Executors.newFixedThreadPool(WRITE_THREADS);
+    private final Queue<Future<?>> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Create a new class cache.
+     *
+     * @param root    The directory to store remapped classes in.
+     * @param refresh Ignore any existing classes, treating the cache as empty. Newly remapped classes replace the
+     *                existing ones, allowing us to recover from a corrupt cache.
+     */
+    ClassRemapCache(Path root, boolean refresh) {
+        this.root = root;
+        this.refresh = refresh;
+    }
+
+    /**
+     * A remapped class.
+     *
+     * @param name     The class's remapped internal name.
+     * @param contents The remapped class file.
+     */
+    record Entry(String name, byte[] contents) {
+    }
+
+    /**
+     * Check whether a class is in the cache.
+     * <p>
+     * This also marks the class as recently used, so it is not {@linkplain #evict() evicted}.
+     *
+     * @param key The class's {@linkplain #computeKeys(MappingTreeView, String, String, List) key}.
+     * @return Whether this class has been remapped before.
+     */
+    boolean has(String key) {
+        if (refresh) return false;
+
+        // Bump the modification time, which also tells us whether the file exists.
+        var location = getLocation(key);
+        try {
+            Files.setLastModifiedTime(location, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            LOG.warn("Failed to update modification time of {}.", location, e);
+            return MoreFiles.exists(location);
+        }
+    }
+
+    /**
+     * Get a remapped class from the cache.
+     *
+     * @param key The class's {@linkplain #computeKeys(MappingTreeView, String, String, List) key}.
+     * @return The remapped class, or {@code null} if not present.
+     * @throws IOException If the class could not be read.
+     */
+    @Nullable
+    Entry get(String key) throws IOException {
+        var location = getLocation(key);
+        if (!MoreFiles.exists(location)) return null;
+
+        try (var stream = new DataInputStream(Files.newInputStream(location))) {
+            var name = stream.readUTF();
+            return new Entry(name, stream.readAllBytes());
+        }
+    }
+
+    /**
+     * Get the remapped name of a class in the cache, without reading the rest of the class.
+     *
+     * @param key The class's {@linkplain #computeKeys(MappingTreeView, String, String, List) key}.
+     * @return The class's remapped internal name, or {@code null} if not present.
+     * @throws IOException If the class could not be read.
+     */
+    @Nullable
+    String getName(String key) throws IOException {
+        var location = getLocation(key);
+        if (!MoreFiles.exists(location)) return null;
+
+        try (var stream = new DataInputStream(Files.newInputStream(location))) {
+            return stream.readUTF();
+        }
+    }
+
+    /**
+     * Add a remapped class to the cache.
+     * <p>
+     * The class is written in the background. If the class could not be written, this is reported by the next call to
+     * {@link #flush()}.
+     *
+     * @param key   The class's {@linkplain #computeKeys(MappingTreeView, String, String, List) key}.
+     * @param entry The remapped class.
+     */
+    void put(String key, Entry entry) {
+        pendingWrites.add(writer.submit(() -> {
+            write(key, entry);
+            return null;
+        }));
+    }
+
+    /**
+     * Wait for all classes {@linkplain #put(String, Entry) added} so far to be written.
+     *
+     * @throws IOException If any class could not be written, or we were interrupted while waiting.
+     */
+    void flush() throws IOException {
+        IOException error = null;
+        Future<?> write;
+        while ((write = pendingWrites.poll()) != null) {
+            try {
+                write.get();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof IOException cause)) throw new IllegalStateException("Failed to write class", e.getCause());
+
+                // Wait for the remaining writes to finish before reporting the error.
+                if (error == null) {
+                    error = cause;
+                } else {
+                    error.addSuppressed(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing classes");
+            }
+        }
+
+        if (error != null) throw error;
+    }
+
+    /**
+     * Remove any classes which have not been used for {@link #MAX_AGE}. Failing to delete a class is logged, but
+     * otherwise ignored.
+     */
+    void evict() {
+        if (!Files.isDirectory(root)) return;
+
+        var cutoff = FileTime.from(Instant.now().minus(MAX_AGE));
+        int evicted = 0;
+        try (var files = Files.walk(root)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attributes.isRegularFile() && attributes.lastModifiedTime().compareTo(cutoff) < 0) {
+                    Files.deleteIfExists(file);
+                    evicted++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOG.warn("Failed to evict old classes from {}.", root, e);
+        }
+
+        if (evicted > 0) LOG.info("Evicted {} unused classes from {}.", evicted, root);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    private void write(String key, Entry entry) throws IOException {
+        var location = getLocation(key);
+        if (!refresh && MoreFiles.exists(location)) return;
+
+        try {
+            Files.createDirectories(location.getParent());
+            try (var scratch = MoreFiles.scratch(location)) {
+                try (var stream = new DataOutputStream(Files.newOutputStream(scratch.path()))) {
+                    stream.writeUTF(entry.name());
+                    stream.write(entry.contents());
+                }
+                scratch.commit();
+            }
+        } catch (IOException e) {
+            throw new IOException("Failed to cache remapped class " + entry.name() + " to " + location, e);
+        }
+    }
+
+    private Path getLocation(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2) + ".class");
+    }
+
+    /**
+     * Compute the cache key of every class in a set of jars.
+     *
+     * @param mappings      The mappings used to remap these jars.
+     * @param fromNamespace The namespace the jars are currently in.
+     * @param toNamespace   The namespace the jars will be remapped to.
+     * @param jars          The jars to remap.
+     * @return A map of class names (in the original namespace) to their key.
+     * @throws IOException If the jars could not be read.
+     */
+    static Map<String, String> computeKeys(
+        MappingTreeView mappings, String fromNamespace, String toNamespace, List<Path> jars
+    ) throws IOException {
+        var index = new Index(mappings, mappings.getNamespaceId(fromNamespace), mappings.getNamespaceId(toNamespace));
+
+        // Find the name of every class up-front. This allows us to only keep the constants which refer to known
+        // classes, rather than holding every class's constant pool in memory.
+        for (var jar : jars) {
+            try (var zip = ZipFile.builder().setPath(jar).get()) {
+                var entries = zip.getEntries();
+                while (entries.hasMoreElements()) {
+                    var entry = entries.nextElement();
+                    if (entry.isDirectory() || !entry.getName().endsWith(".class")) continue;
+                    index.names.add(entry.getName().substring(0, entry.getName().length() - ".class".length()));
+                }
+            }
+        }
+
+        List<ClassInfo> classes = new ArrayList<>();
+        for (var jar : jars) {
+            try (var zip = ZipFile.builder().setPath(jar).get()) {
+                var entries = zip.getEntriesInPhysicalOrder();
+                while (entries.hasMoreElements()) {
+                    var entry = entries.nextElement();
+                    if (entry.isDirectory() || !entry.getName().endsWith(".class")) continue;
+
+                    byte[] contents;
+                    try (var stream = zip.getInputStream(entry)) {
+                        contents = stream.readAllBytes();
+                    }
+
+                    var info = index.read(contents);
+                    index.classes.put(info.name(), info);
+                    classes.add(info);
+                }
+            }
+        }
+
+        Map<String, String> keys = new HashMap<>(classes.size());
+        for (var info : classes) keys.put(info.name(), index.getKey(info));
+        return keys;
+    }
+
+    /**
+     * The information about a class needed to compute its key.
+     *
+     * @param name       The class's name.
+     * @param superName  The class's superclass, or {@code null} for {@link Object}.
+     * @param interfaces The class's interfaces.
+     * @param hash       A hash of the class's contents.
+     * @param references All classes referenced by this class, including itself, in sorted order.
+     */
+    private record ClassInfo(
+        String name, @Nullable String superName, String[] interfaces, String hash, Set<String> references
+    ) {
+    }
+
+    /**
+     * The mappings and class hierarchy, used to compute the key for each class.
+     */
+    private static final class Index {
+        private final MappingTreeView mappings;
+        private final int from;
+        private final int to;
+
+        final Set<String> names = new HashSet<>();
+        final Map<String, ClassInfo> classes = new HashMap<>();
+        private final Map<String, String> hierarchyDigests = new HashMap<>();
+
+        Index(MappingTreeView mappings, int from, int to) {
+            this.mappings = mappings;
+            this.from = from;
+            this.to = to;
+        }
+
+        ClassInfo read(byte[] contents) {
+            var reader = new ClassReader(contents);
+
+            Set<String> references = new TreeSet<>();
+            references.add(reader.getClassName());
+            for (int i = 1; i < reader.getItemCount(); i++) {
+                // getItem returns the offset after the tag byte, or 0 for the unused half of long/double constants.
+                var offset = reader.getItem(i);
+                if (offset == 0 || contents[offset - 1] != CONSTANT_UTF8) continue;
+
+                var length = ((contents[offset] & 0xFF) << 8) | (contents[offset + 1] & 0xFF);
+                try {
+                    addReferences(references, new DataInputStream(new ByteArrayInputStream(contents, offset, length + 2)).readUTF());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Malformed constant in " + reader.getClassName(), e);
+                }
+            }
+
+            var digest = MoreDigests.createSha256();
+            digest.update(contents);
+
+            return new ClassInfo(
+                reader.getClassName(), reader.getSuperName(), reader.getInterfaces(),
+                MoreDigests.toHexString(digest), references
+            );
+        }
+
+        String getKey(ClassInfo info) {
+            var digest = MoreDigests.createSha256();
+            update(digest, FORMAT);
+            update(digest, info.hash());
+            update(digest, getLocalDigest(info.name()));
+
+            for (var reference : info.references()) {
+                update(digest, reference);
+                update(digest, getHierarchyDigest(reference));
+            }
+
+            return MoreDigests.toHexString(digest);
+        }
+
+        /**
+         * Find any classes referenced by a string in the constant pool.
+         *
+         * @param references The set of references to add to.
+         * @param string     The string constant.
+         */
+        private void addReferences(Set<String> references, String string) {
+            if (isKnown(string)) references.add(string);
+
+            // Find any classes within descriptors and signatures.
+            for (int start = string.indexOf('L'); start >= 0; start = string.indexOf('L', start + 1)) {
+                int end = start + 1;
+                while (end < string.length() && string.charAt(end) != ';' && string.charAt(end) != '<') end++;
+                if (end >= string.length()) break;
+
+                var name = string.substring(start + 1, end);
+                if (isKnown(name)) references.add(name);
+            }
+        }
+
+        private boolean isKnown(String name) {
+            return names.contains(name) || getMapping(name) != null;
+        }
+
+        private MappingTreeView.@Nullable ClassMappingView getMapping(String name) {
+            return mappings.getClass(name, from);
+        }
+
+        /**
+         * Get a digest of a class's name and member mappings, along with those of its supertypes.
+         *
+         * @param name The class's name.
+         * @return The digest of this class's hierarchy.
+         */
+        private String getHierarchyDigest(String name) {
+            var existing = hierarchyDigests.get(name);
+            if (existing != null) return existing;
+
+            var digest = MoreDigests.createSha256();
+            var mapping = getMapping(name);
+            if (mapping != null) {
+                update(digest, mapping.getName(to));
+
+                List<String> members = new ArrayList<>();
+                for (var field : mapping.getFields()) {
+                    members.add("F" + field.getName(from) + ":" + field.getDesc(from) + ":" + field.getName(to));
+                }
+                for (var method : mapping.getMethods()) {
+                    members.add("M" + method.getName(from) + method.getDesc(from) + ":" + method.getName(to));
+                }
+                members.sort(null);
+                for (var member : members) update(digest, member);
+            }
+
+            var info = classes.get(name);
+            if (info != null) {
+                if (info.superName() != null) {
+                    update(digest, info.superName());
+                    update(digest, getHierarchyDigest(info.superName()));
+                }
+                for (var iface : info.interfaces()) {
+                    update(digest, iface);
+                    update(digest, getHierarchyDigest(iface));
+                }
+            }
+
+            var result = MoreDigests.toHexString(digest);
+            hierarchyDigests.put(name, result);
+            return result;
+        }
+
+        /**
+         * Get a digest of the mappings which only affect this class, such as parameter and local variable names.
+         *
+         * @param name The class's name.
+         * @return The digest of this class's local mappings.
+         */
+        private String getLocalDigest(String name) {
+            var digest = MoreDigests.createSha256();
+            var mapping = getMapping(name);
+            if (mapping == null) return MoreDigests.toHexString(digest);
+
+            List<String> locals = new ArrayList<>();
+            for (var method : mapping.getMethods()) {
+                var prefix = method.getName(from) + method.getDesc(from) + ":";
+                for (var arg : method.getArgs()) {
+                    locals.add(prefix + "A" + arg.getArgPosition() + ":" + arg.getLvIndex() + ":" + arg.getName(to));
+                }
+                for (var local : method.getVars()) {
+                    locals.add(prefix + "V" + local.getLvIndex() + ":" + local.getLvtRowIndex()
+                        + ":" + local.getStartOpIdx() + ":" + local.getEndOpIdx() + ":" + local.getName(to));
+                }
+            }
+            locals.sort(null);
+            for (var local : locals) update(digest, local);
+
+            return MoreDigests.toHexString(digest);
+        }
+
+        private static void update(MessageDigest digest, @Nullable String value) {
+            if (value != null) digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+}
@@ -1,20 +1,29 @@
 package cc.tweaked.vanillaextract.core.minecraft;
 
 import cc.tweaked.vanillaextract.core.download.FileDownloader;
+import cc.tweaked.vanillaextract.core.download.RemoteFile;
+import cc.tweaked.vanillaextract.core.download.RemoteZipFile;
 import cc.tweaked.vanillaextract.core.inputs.FileFingerprint;
 import cc.tweaked.vanillaextract.core.inputs.HashingInputCollector;
+import cc.tweaked.vanillaextract.core.inputs.InputTrace;
 import cc.tweaked.vanillaextract.core.minecraft.manifest.MinecraftVersion;
 import cc.tweaked.vanillaextract.core.minecraft.manifest.ServerMetadata;
 import cc.tweaked.vanillaextract.core.util.JarContentsFilter;
+import cc.tweaked.vanillaextract.core.util.MoreDigests;
 import cc.tweaked.vanillaextract.core.util.MoreFiles;
+import cc.tweaked.vanillaextract.core.util.PathLock;
 import net.fabricmc.tinyremapper.FileSystemReference;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -23,6 +32,16 @@ import java.util.Objects;
  * Provides the base Minecraft jars {@code client.jar}, {@code server.jar}.
  */
 public final class MinecraftProvider {
+    private static final Logger LOG = LoggerFactory.getLogger(MinecraftProvider.class);
+
+    private static final String VERSIONS_LIST = "versions.list";
+    private static final String LIBRARIES_LIST = "libraries.list";
+
+    /**
+     * The name of the {@linkplain InputTrace#getLatestLocation(Path, String) recorded input trace} for the split jars.
+     */
+    public static final String SPLIT_TRACE = "split";
+
     private final FileDownloader downloader;
 
     /**
@@ -84,29 +103,49 @@ public final class MinecraftProvider {
         MinecraftVersion.Downloads downloads,
         List<MinecraftVersion.Library> clientLibraries
     ) throws IOException {
-        Path clientJar, clientMappings, fullServerJar, serverMappings;
+        var serverDownload = downloads.server().downloadLike(target, "server", "jar");
+        var fullServerJar = serverDownload.build().destination();
+        var extractedServerJar = target.resolve("server-extracted-" + downloads.server().sha1() + ".jar");
+
+        // The server jar is a bundler, which contains the actual server jar and its libraries. We only need the former,
+        // so if possible, read just that out of the remote file rather than downloading the whole bundler.
+        var remoteServer = MoreFiles.exists(fullServerJar) ? null : downloader.openRemote(serverDownload.build());
+
+        Path clientJar, clientMappings, serverMappings;
         try (var scope = downloader.openScope()) {
             clientJar = downloads.client().downloadLike(target, "client", "jar").download(scope);
             clientMappings = downloads.client_mappings().downloadLike(target, "client", "txt").download(scope);
-            fullServerJar = downloads.server().downloadLike(target, "server", "jar").download(scope);
+            if (remoteServer == null) serverDownload.download(scope);
             serverMappings = downloads.server_mappings().downloadLike(target, "server", "txt").download(scope);
         }
 
-        var extractedServerJar = target.resolve("server-extracted-" + downloads.server().sha1() + ".jar");
-
         // Extract server dependencies and main jar
-        List<String> serverLibraries;
-        try (var serverFs = FileSystemReference.openJar(fullServerJar)) {
-            var jarPath = serverFs.getPath("META-INF");
-            ServerMetadata serverMetadata = ServerMetadata.parse(jarPath);
-            if (serverMetadata.versions().size() != 1) {
-                throw new IllegalStateException("Got multiple versions in server version list.");
+        List<String> serverLibraries = null;
+        try (var lock = PathLock.acquire(extractedServerJar)) {
+            if (remoteServer != null) {
+                var metadataDir = target.resolve("server-" + downloads.server().sha1());
+                try {
+                    serverLibraries = extractRemoteServer(remoteServer, metadataDir, extractedServerJar);
+                } catch (IOException e) {
+                    LOG.warn("Cannot extract server jar from {}. Downloading the full jar instead.", remoteServer.uri(), e);
+                }
             }
 
-            var extractedServerVersion = serverMetadata.versions().get(0);
-            copyIfNeeded(jarPath.resolve("versions"), extractedServerVersion, extractedServerJar);
+            if (serverLibraries == null) {
+                serverDownload.download(downloader);
+                try (var serverFs = FileSystemReference.openJar(fullServerJar)) {
+                    var jarPath = serverFs.getPath("META-INF");
+                    var serverMetadata = ServerMetadata.parse(jarPath);
+                    var extractedServerVersion = getServerVersion(serverMetadata);
+                    if (!hasSha256(extractedServerJar, extractedServerVersion.sha256())) {
+                        try (var stream = Files.newInputStream(jarPath.resolve("versions").resolve(extractedServerVersion.path()))) {
+                            extractTo(stream, extractedServerVersion.sha256(), extractedServerJar);
+                        }
+                    }
 
-            serverLibraries = serverMetadata.libraries().stream().map(ServerMetadata.IncludedFile::id).toList();
+                    serverLibraries = getLibraries(serverMetadata);
+                }
+            }
         }
 
         // Extract client dependencies.
@@ -131,13 +170,17 @@ public final class MinecraftProvider {
     /**
      * Split the vanilla Minecraft jars into separate common and client jars.
      *
-     * @param target       The directory to download and unpack the jars into.
-     * @param rawArtifacts The raw Minecraft artifacts, as returned by {@link #provideRaw(Path, MinecraftVersion.Downloads, List)}.
-     * @param refresh      Re-process the split files.
+     * @param target         The directory to download and unpack the jars into.
+     * @param rawArtifacts   The raw Minecraft artifacts, as returned by {@link #provideRaw(Path, MinecraftVersion.Downloads, List)}.
+     * @param traceDirectory The directory to {@linkplain InputTrace#record(Path, String, InputTrace) record} an input
+     *                       trace to if the jars are rebuilt, or {@code null}.
+     * @param refresh        Re-process the split files.
      * @return The resulting {@linkplain SplitArtifacts minecraft artifacts}.
      * @throws IOException If the jars could not be downloaded.
      */
-    public SplitArtifacts provideSplit(Path target, RawArtifacts rawArtifacts, boolean refresh) throws IOException {
+    public SplitArtifacts provideSplit(
+        Path target, RawArtifacts rawArtifacts, @Nullable Path traceDirectory, boolean refresh
+    ) throws IOException {
         // Split the client and server jars.
         var inputs = new HashingInputCollector("Split jars");
         rawArtifacts.client().jar().addInputs(inputs);
@@ -147,11 +190,13 @@ public final class MinecraftProvider {
         var clientOnlyJar = target.resolve("client-only-" + digest + ".jar");
         var commonJar = target.resolve("common-" + digest + ".jar");
         if (refresh || !MoreFiles.exists(commonJar) || !MoreFiles.exists(clientOnlyJar)) {
-            JarContentsFilter.split(rawArtifacts.server().jar().path(), rawArtifacts.client().jar().path(), commonJar, clientOnlyJar);
+            try (var lock = PathLock.acquire(commonJar)) {
+                if (refresh || !MoreFiles.exists(commonJar) || !MoreFiles.exists(clientOnlyJar)) {
+                    JarContentsFilter.split(rawArtifacts.server().jar().path(), rawArtifacts.client().jar().path(), commonJar, clientOnlyJar);
 
-            try (var scratch = MoreFiles.scratch(clientOnlyJar.resolveSibling(digest + ".log"))) {
-                Files.writeString(scratch.path(), inputs.toString());
-                scratch.commit();
+                    inputs.getTrace().write(clientOnlyJar.resolveSibling(digest + ".trace.json"));
+                    InputTrace.record(traceDirectory, SPLIT_TRACE, inputs.getTrace());
+                }
             }
         }
 
@@ -164,16 +209,98 @@ public final class MinecraftProvider {
         );
     }
 
-    private static void copyIfNeeded(Path jarPath, ServerMetadata.IncludedFile file, Path destination) throws IOException {
+    /**
+     * Extract the server jar and its metadata from a remote server bundler.
+     * <p>
+     * The bundler's metadata files are cached in {@code metadataDir}, so subsequent runs only hit the network if the
+     * extracted jar is missing or corrupt.
+     *
+     * @param remote             The remote bundler jar.
+     * @param metadataDir        The directory to store the bundler's metadata in.
+     * @param extractedServerJar The path to extract the server jar to.
+     * @return The server's libraries.
+     * @throws IOException If the files could not be read.
+     */
+    private static List<String> extractRemoteServer(RemoteFile remote, Path metadataDir, Path extractedServerJar) throws IOException {
+        RemoteZipFile zip = null;
+
+        if (!MoreFiles.exists(metadataDir.resolve(VERSIONS_LIST)) || !MoreFiles.exists(metadataDir.resolve(LIBRARIES_LIST))) {
+            zip = RemoteZipFile.open(remote);
+            Files.createDirectories(metadataDir);
+            for (var name : List.of(VERSIONS_LIST, LIBRARIES_LIST)) {
+                try (var stream = zip.getInputStream(getEntry(zip, "META-INF/" + name))) {
+                    extractTo(stream, null, metadataDir.resolve(name));
+                }
+            }
+        }
+
+        var serverMetadata = ServerMetadata.parse(metadataDir);
+        var serverVersion = getServerVersion(serverMetadata);
+        if (!hasSha256(extractedServerJar, serverVersion.sha256())) {
+            if (zip == null) zip = RemoteZipFile.open(remote);
+
+            LOG.info("Extracting {} from {}", serverVersion.path(), remote.uri());
+            try (var stream = zip.getInputStream(getEntry(zip, "META-INF/versions/" + serverVersion.path()))) {
+                extractTo(stream, serverVersion.sha256(), extractedServerJar);
+            }
+        }
+
+        return getLibraries(serverMetadata);
+    }
+
+    private static RemoteZipFile.Entry getEntry(RemoteZipFile zip, String name) throws IOException {
+        var entry = zip.getEntry(name);
+        if (entry == null) throw new FileNotFoundException("Cannot find " + name + " in server jar");
+        return entry;
+    }
+
+    private static ServerMetadata.IncludedFile getServerVersion(ServerMetadata metadata) {
+        if (metadata.versions().size() != 1) {
+            throw new IllegalStateException("Got multiple versions in server version list.");
+        }
+
+        return metadata.versions().get(0);
+    }
+
+    private static List<String> getLibraries(ServerMetadata metadata) {
+        return metadata.libraries().stream().map(ServerMetadata.IncludedFile::id).toList();
+    }
+
+    private static boolean hasSha256(Path path, String sha256) throws IOException {
         try {
-            var sha256 = MoreFiles.computeSha256(destination);
-            if (Objects.equals(file.sha256(), sha256)) return;
+            return Objects.equals(sha256, MoreFiles.getSha256(path));
         } catch (FileNotFoundException | NoSuchFileException ignored) {
+            return false;
         }
+    }
 
+    /**
+     * Atomically copy a stream to a file, checking it has the expected hash.
+     *
+     * @param stream      The stream to copy.
+     * @param sha256      The expected SHA-256 hash of the stream, or {@code null} if unknown.
+     * @param destination The file to write to.
+     * @throws IOException If the file could not be written, or the hash does not match.
+     */
+    private static void extractTo(InputStream stream, @Nullable String sha256, Path destination) throws IOException {
         try (var scratch = MoreFiles.scratch(destination)) {
-            Files.copy(jarPath.resolve(file.path()), scratch.path(), StandardCopyOption.REPLACE_EXISTING);
+            // Compute the SHA1 hash too, so fingerprinting the extracted jar doesn't need to read it again.
+            var sha256Digest = MoreDigests.createSha256();
+            var sha1Digest = MoreDigests.createSha1();
+            try (var output = new DigestOutputStream(new DigestOutputStream(Files.newOutputStream(scratch.path()), sha1Digest), sha256Digest)) {
+                stream.transferTo(output);
+            }
+
+            var actualSha256 = MoreDigests.toHexString(sha256Digest);
+            if (sha256 != null && !sha256.equals(actualSha256)) {
+                throw new IOException("Extracted " + destination + " has hash " + actualSha256 + ", expected " + sha256);
+            }
+
             scratch.commit();
+            if (sha256 != null) {
+                MoreFiles.setSha256(destination, actualSha256);
+                MoreFiles.setSha1(destination, MoreDigests.toHexString(sha1Digest));
+            }
         }
     }
 }
@@ -60,7 +60,8 @@ public final class MinecraftVersionProvider {
             }
         }
 
-        // Otherwise re-download the manifest and try again.
+        // Otherwise check for a new manifest and try again. The version may have only just been released, so we always
+        // make a request here. This is conditional, so only downloads the manifest if it has changed.
         FileDownload.builder(MojangUrls.VERSION_MANIFEST, manifestPath).force().download(downloader);
         return getVersionManifestFromFile(version);
     }
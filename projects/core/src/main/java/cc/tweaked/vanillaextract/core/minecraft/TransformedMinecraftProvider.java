@@ -4,17 +4,25 @@ import cc.tweaked.vanillaextract.core.MavenArtifact;
 import cc.tweaked.vanillaextract.core.MavenRelease;
 import cc.tweaked.vanillaextract.core.inputs.FileFingerprint;
 import cc.tweaked.vanillaextract.core.inputs.HashingInputCollector;
+import cc.tweaked.vanillaextract.core.inputs.InputTrace;
 import cc.tweaked.vanillaextract.core.mappings.MappingNamespaces;
+import cc.tweaked.vanillaextract.core.mappings.MappingsFileProvider;
 import cc.tweaked.vanillaextract.core.util.MoreFiles;
+import cc.tweaked.vanillaextract.core.util.ParallelJarWriter;
+import cc.tweaked.vanillaextract.core.util.PathLock;
 import cc.tweaked.vanillaextract.core.util.PomWriter;
 import cc.tweaked.vanillaextract.core.util.Timing;
 import net.fabricmc.accesswidener.AccessWidener;
 import net.fabricmc.accesswidener.AccessWidenerClassVisitor;
 import net.fabricmc.accesswidener.AccessWidenerReader;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
 import net.fabricmc.tinyremapper.InputTag;
-import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
 import net.fabricmc.tinyremapper.TinyUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
@@ -23,10 +31,19 @@ import org.slf4j.LoggerFactory;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -41,21 +58,53 @@ public final class TransformedMinecraftProvider {
     public static final String COMMON_MODULE = "minecraft-common";
     public static final String CLIENT_ONLY_MODULE = "minecraft-clientOnly";
 
+    /**
+     * The classifier of the jar containing Minecraft's resources. The main jar only contains classes.
+     */
+    public static final String RESOURCES_CLASSIFIER = "resources";
+
+    /**
+     * The name of the {@linkplain InputTrace#getLatestLocation(Path, String) recorded input trace} for the transformed
+     * jars.
+     */
+    public static final String TRACE = "transformed";
+
     private static final Pattern INVALID_LOCAL_VARIABLE = Pattern.compile("\\$\\$\\d+");
 
+    private final Path cache;
     private final Path mavenPath;
 
-    public TransformedMinecraftProvider(Path mavenPath) {
+    /**
+     * Create a new {@link TransformedMinecraftProvider}.
+     *
+     * @param cache     The directory to store intermediate (remapped but not access-widened) jars in.
+     * @param mavenPath The maven repository to write the final jars to.
+     */
+    public TransformedMinecraftProvider(Path cache, Path mavenPath) {
+        this.cache = cache;
         this.mavenPath = mavenPath;
     }
 
     /**
      * A single transformed jar.
+     * <p>
+     * Each jar is split into two files: the main jar (containing just the classes), and a
+     * {@linkplain #RESOURCES_CLASSIFIER resources} jar. Only the classes are needed to compile against Minecraft, and
+     * they are much smaller than the full jar.
      *
-     * @param path    The path to the resulting jar.
-     * @param release The maven release of this jar.
+     * @param path      The path to the resulting jar.
+     * @param resources The path to the jar containing all non-class files.
+     * @param release   The maven release of this jar.
      */
-    public record TransformedJar(Path path, MavenRelease release) {
+    public record TransformedJar(Path path, Path resources, MavenRelease release) {
+        /**
+         * Get the maven artifact for the {@linkplain #resources() resources jar}.
+         *
+         * @return The resources artifact.
+         */
+        public MavenArtifact resourcesArtifact() {
+            return new MavenArtifact(release, RESOURCES_CLASSIFIER, null);
+        }
     }
 
     /**
@@ -67,11 +116,59 @@ public final class TransformedMinecraftProvider {
     public record TransformedJars(TransformedJar common, TransformedJar clientOnly) {
     }
 
+    /**
+     * Options controlling how Minecraft is transformed. These do not affect the contents of the resulting jars.
+     *
+     * @param remapperThreads    The number of threads {@link TinyRemapper} should use. This is also used when applying
+     *                           access wideners.
+     * @param compressionThreads The number of threads to use when compressing the remapped jars.
+     * @param remapMemoryLimit   The approximate amount of class data (in bytes) to remap at once. If Minecraft is larger
+     *                           than this, it is remapped in several smaller batches, reducing peak memory usage at
+     *                           the cost of a slower remap. Note this only bounds the classes being remapped: the full
+     *                           mappings are always loaded into memory (to compute each class's cache key).
+     */
+    public record Options(int remapperThreads, int compressionThreads, long remapMemoryLimit) {
+        public Options {
+            if (remapperThreads <= 0) throw new IllegalArgumentException("remapperThreads must be positive");
+            if (compressionThreads <= 0) throw new IllegalArgumentException("compressionThreads must be positive");
+            if (remapMemoryLimit <= 0) throw new IllegalArgumentException("remapMemoryLimit must be positive");
+        }
+
+        /**
+         * The default options, using one thread per available processor, and remapping all classes at once.
+         *
+         * @return The default options.
+         */
+        public static Options defaults() {
+            var processors = Runtime.getRuntime().availableProcessors();
+            return new Options(processors, processors, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Deobfuscate Minecraft, apply access wideners, and publish the resulting jars to our maven repository.
+     *
+     * @param version        The current Minecraft version.
+     * @param artifacts      The split Minecraft jars.
+     * @param mappings       The mappings to use.
+     * @param accessWideners The access wideners to apply.
+     * @param options        Options controlling how the jars are transformed.
+     * @param traceDirectory The directory to record a trace of our inputs to when rebuilding, or {@code null}.
+     * @param rewrite        Write the transformed jars (and their POMs) again, even if they already exist. The
+     *                       remapped jars and {@link ClassRemapCache} are still reused.
+     * @param refresh        Remap the jars from scratch, ignoring both the remapped jars and {@link ClassRemapCache}.
+     *                       This also implies {@code rewrite}.
+     * @return The transformed jars.
+     * @throws IOException If the jars could not be transformed.
+     */
     public TransformedJars provide(
         String version,
         MinecraftProvider.SplitArtifacts artifacts,
         FileFingerprint mappings,
         List<FileFingerprint> accessWideners,
+        Options options,
+        @Nullable Path traceDirectory,
+        boolean rewrite,
         boolean refresh
     ) throws IOException {
         // Build up our list of inputs.
@@ -89,32 +186,36 @@ public final class TransformedMinecraftProvider {
         var clientOnly = getMavenModule(version, CLIENT_ONLY_MODULE, hash);
 
         var commonJar = common.getJarLocation(mavenPath);
+        var commonResources = common.getFileLocation(mavenPath, RESOURCES_CLASSIFIER, "jar");
         var clientOnlyJar = clientOnly.getJarLocation(mavenPath);
+        var clientOnlyResources = clientOnly.getFileLocation(mavenPath, RESOURCES_CLASSIFIER, "jar");
 
         // Write jars if needed.
-        if (refresh || !MoreFiles.exists(commonJar) || !MoreFiles.exists(clientOnlyJar)) {
-            transformJars(
-                mappings.path(), accessWideners,
-                List.of(artifacts.common().jar().path(), artifacts.client().jar().path()),
-                List.of(commonJar, clientOnlyJar)
+        var writeJars = rewrite || refresh || Stream.of(commonJar, commonResources, clientOnlyJar, clientOnlyResources).anyMatch(x -> !MoreFiles.exists(x));
+        if (writeJars) {
+            var remapped = provideRemapped(version, artifacts, mappings, options, refresh);
+            splitJars(
+                accessWideners, remapped, List.of(commonJar, clientOnlyJar), List.of(commonResources, clientOnlyResources),
+                options
             );
+
+            InputTrace.record(traceDirectory, TRACE, inputs.getTrace());
         }
 
-        // Write POMs if needed.
-        if (!MoreFiles.exists(common.getPomLocation(mavenPath)) || !MoreFiles.exists(common.getPomLocation(mavenPath))) {
+        // Write POMs if needed. We always rewrite them alongside the jars, in case they were written by an older
+        // version which did not split out resources.
+        if (writeJars || !MoreFiles.exists(common.getPomLocation(mavenPath)) || !MoreFiles.exists(clientOnly.getPomLocation(mavenPath))) {
             writeMinecraftPoms(version, artifacts, mavenPath, common, clientOnly);
         }
 
         // Write a trace of the inputs, for easier debugging.
-        var trace = common.getFileLocation(mavenPath, "inputs", "log");
-        if (!MoreFiles.exists(trace)) {
-            try (var scratch = MoreFiles.scratch(trace)) {
-                Files.writeString(scratch.path(), inputs.toString());
-                scratch.commit();
-            }
-        }
+        var trace = common.getFileLocation(mavenPath, "inputs", "json");
+        if (!MoreFiles.exists(trace)) inputs.getTrace().write(trace);
 
-        return new TransformedJars(new TransformedJar(commonJar, common), new TransformedJar(clientOnlyJar, clientOnly));
+        return new TransformedJars(
+            new TransformedJar(commonJar, commonResources, common),
+            new TransformedJar(clientOnlyJar, clientOnlyResources, clientOnly)
+        );
     }
 
     private static MavenRelease getMavenModule(String version, String module, String hash) {
@@ -122,91 +223,594 @@ public final class TransformedMinecraftProvider {
     }
 
     /**
-     * Deobfuscate and access-transform our jars.
+     * Get the deobfuscated Minecraft jars, without any access wideners applied.
+     * <p>
+     * These only depend on the Minecraft jars and mappings, and so are shared by all projects (and all sets of access
+     * wideners) using the same version. This means that changing an access widener only requires re-transforming a
+     * handful of classes, rather than remapping the whole game again.
      *
-     * @param mappings       The mappings to use.
-     * @param accessWideners The access wideners to apply.
-     * @param inputJars      The input jars to use.
-     * @param outputJars     The paths to write the output jars to. Must be the same length as {@code inputJars}.
+     * @param version   The current Minecraft version.
+     * @param artifacts The split Minecraft jars.
+     * @param mappings  The mappings to use.
+     * @param options   Options controlling how the jars are remapped.
+     * @param refresh   Remap the jars again, ignoring both the existing jars and the {@link ClassRemapCache}.
+     * @return The remapped common and client-only jars.
+     * @throws IOException If the jars could not be remapped.
      */
-    private static void transformJars(
-        Path mappings, List<FileFingerprint> accessWideners,
-        List<Path> inputJars, List<Path> outputJars
+    private List<Path> provideRemapped(
+        String version, MinecraftProvider.SplitArtifacts artifacts, FileFingerprint mappings, Options options,
+        boolean refresh
     ) throws IOException {
-        if (inputJars.size() != outputJars.size()) throw new IllegalArgumentException("Jars must be the same length");
+        var inputs = new HashingInputCollector("Remapped Minecraft " + version);
+        inputs.addInput(artifacts.common().jar());
+        inputs.addInput(artifacts.client().jar());
+        inputs.addInput(mappings);
+        var hash = inputs.getDigest();
 
-        // Read all our access wideners, then compute the set of all files we'll need to transform.
-        var accessWidener = new AccessWidener();
-        {
-            var accessWidenerReader = new AccessWidenerReader(accessWidener);
-            for (var widener : accessWideners) {
-                try (var reader = Files.newBufferedReader(widener.path())) {
-                    accessWidenerReader.read(reader);
+        var directory = cache.resolve(version).resolve("remapped");
+        var commonJar = directory.resolve("common-" + hash + ".jar");
+        var clientOnlyJar = directory.resolve("client-only-" + hash + ".jar");
+        var outputs = List.of(commonJar, clientOnlyJar);
+
+        if (refresh || !MoreFiles.exists(commonJar) || !MoreFiles.exists(clientOnlyJar)) {
+            try (var lock = PathLock.acquire(commonJar)) {
+                if (refresh || !MoreFiles.exists(commonJar) || !MoreFiles.exists(clientOnlyJar)) {
+                    try (var classCache = new ClassRemapCache(cache.resolve("remapped-classes"), refresh)) {
+                        remapJars(
+                            classCache, mappings.path(),
+                            List.of(artifacts.common().jar().path(), artifacts.client().jar().path()), outputs, options
+                        );
+
+                        // The remapped jars have been written, so the cached classes are only needed by later builds.
+                        // Failing to cache them shouldn't fail this one.
+                        try {
+                            classCache.flush();
+                        } catch (IOException e) {
+                            LOG.warn("Failed to cache remapped classes.", e);
+                        }
+                        classCache.evict();
+                    }
+                    inputs.getTrace().write(directory.resolve(hash + ".trace.json"));
                 }
             }
         }
 
-        var accessWidenedFiles = accessWidener.getTargets().stream()
-            .map(x -> x.replace('.', '/'))
-            .collect(Collectors.toUnmodifiableSet());
+        return outputs;
+    }
 
-        var remapper = TinyRemapper.newRemapper()
+    /**
+     * Deobfuscate our jars.
+     * <p>
+     * We first look up every class in the {@link ClassRemapCache}. Any classes which have been remapped before are
+     * copied from the cache, and only the remaining classes are passed to {@link TinyRemapper} (with the cached
+     * classes on the classpath, so the remapper still sees the full class hierarchy).
+     * <p>
+     * If the remaining classes fit within {@link Options#remapMemoryLimit()}, they are read into a single
+     * {@link TinyRemapper}, and then written out concurrently. Otherwise, we {@linkplain #remapInBatches(ClassRemapCache,
+     * Path, List, Options) remap them in batches}.
+     *
+     * @param classCache The cache of previously remapped classes.
+     * @param mappings   The mappings to use.
+     * @param inputJars  The input jars to use.
+     * @param outputJars The paths to write the output jars to. Must be the same length as {@code inputJars}.
+     * @param options    Options controlling how the jars are remapped.
+     */
+    private static void remapJars(
+        ClassRemapCache classCache, Path mappings, List<Path> inputJars, List<Path> outputJars, Options options
+    ) throws IOException {
+        if (inputJars.size() != outputJars.size()) throw new IllegalArgumentException("Jars must be the same length");
+
+        var keys = computeKeys(mappings, inputJars);
+
+        List<RemapJob> jobs = new ArrayList<>(inputJars.size());
+        int total = 0, cached = 0;
+        long uncachedSize = 0;
+        for (int i = 0; i < inputJars.size(); i++) {
+            var job = findCached(classCache, keys, inputJars.get(i), outputJars.get(i));
+            jobs.add(job);
+
+            total += job.cached().size() + job.uncached().size();
+            cached += job.cached().size();
+            for (var uncached : job.uncached()) uncachedSize += uncached.size();
+        }
+        LOG.info("Reusing {} of {} remapped classes.", cached, total);
+
+        if (cached == total) {
+            writeJars(classCache, null, new InputTag[jobs.size()], jobs, options);
+        } else if (uncachedSize <= options.remapMemoryLimit()) {
+            remapAll(classCache, mappings, jobs, options);
+        } else {
+            remapInBatches(classCache, mappings, jobs, options);
+
+            // Everything is now in the cache, so assemble the jars from there.
+            List<RemapJob> cachedJobs = new ArrayList<>(jobs.size());
+            for (var job : jobs) {
+                List<String> jobKeys = new ArrayList<>(job.cached());
+                for (var uncached : job.uncached()) jobKeys.add(uncached.key());
+                cachedJobs.add(new RemapJob(job.input(), job.output(), jobKeys, List.of()));
+            }
+            writeJars(classCache, null, new InputTag[jobs.size()], cachedJobs, options);
+        }
+    }
+
+    private static Map<String, String> computeKeys(Path mappings, List<Path> inputJars) throws IOException {
+        var mappingTree = new MemoryMappingTree();
+        MappingsFileProvider.readMappings(mappings, mappingTree);
+        return ClassRemapCache.computeKeys(mappingTree, MappingNamespaces.OFFICIAL, MappingNamespaces.WORKSPACE, inputJars);
+    }
+
+    private static TinyRemapper createRemapper(Path mappings, Options options) {
+        return TinyRemapper.newRemapper()
             .withMappings(TinyUtils.createTinyMappingProvider(mappings, MappingNamespaces.OFFICIAL, MappingNamespaces.WORKSPACE))
             .renameInvalidLocals(true)
             .rebuildSourceFilenames(true)
             .invalidLvNamePattern(INVALID_LOCAL_VARIABLE)
             .inferNameFromSameLvIndex(true)
+            .threads(options.remapperThreads())
             .build();
+    }
+
+    /**
+     * A jar to remap, split into classes which have already been remapped, and those which still need to be.
+     *
+     * @param input    The input jar.
+     * @param output   The path to write the remapped jar to.
+     * @param cached   The {@linkplain ClassRemapCache cache key} of each cached class.
+     * @param uncached The classes which are not in the cache.
+     */
+    private record RemapJob(Path input, Path output, List<String> cached, List<UncachedClass> uncached) {
+        Set<String> uncachedNames() {
+            return uncached().stream().map(UncachedClass::name).collect(Collectors.toUnmodifiableSet());
+        }
+    }
+
+    /**
+     * A class which is not in the {@link ClassRemapCache}.
+     *
+     * @param name The class's original name.
+     * @param key  The class's cache key.
+     * @param size The uncompressed size of the class.
+     */
+    private record UncachedClass(String name, String key, long size) {
+    }
+
+    /**
+     * Split a jar into the classes which are in the {@link ClassRemapCache}, and those which are not.
+     *
+     * @param classCache The cache of remapped classes.
+     * @param keys       The cache key for every class.
+     * @param input      The jar to split.
+     * @param output     The path the remapped jar will be written to.
+     * @return The split jar.
+     * @throws IOException If the jar could not be read.
+     */
+    private static RemapJob findCached(ClassRemapCache classCache, Map<String, String> keys, Path input, Path output) throws IOException {
+        List<String> cached = new ArrayList<>();
+        List<UncachedClass> uncached = new ArrayList<>();
+
+        try (var inputJar = ZipFile.builder().setPath(input).get()) {
+            var entries = inputJar.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                var name = getClassName(entry);
+                if (name == null) continue;
+
+                var key = keys.get(name);
+                if (key == null) throw new IllegalStateException("No key for " + name);
+
+                if (classCache.has(key)) {
+                    cached.add(key);
+                } else {
+                    uncached.add(new UncachedClass(name, key, entry.getSize()));
+                }
+            }
+        }
+
+        return new RemapJob(input, output, cached, uncached);
+    }
+
+    private static @Nullable String getClassName(ZipArchiveEntry entry) {
+        var name = entry.getName();
+        return entry.isDirectory() || !name.endsWith(".class") ? null : name.substring(0, name.length() - ".class".length());
+    }
 
+    /**
+     * Write the classes from several jars into a temporary jar. Entries are copied as-is, without decompressing them.
+     *
+     * @param inputJars The jars to read from.
+     * @param include   Whether to include a class.
+     * @param output    The scratch file to write to.
+     * @return The path to the written jar.
+     * @throws IOException If the jars could not be read or written.
+     */
+    private static Path writeClasses(List<Path> inputJars, Predicate<String> include, MoreFiles.ScratchFile output) throws IOException {
+        try (var outputJar = new ZipArchiveOutputStream(output.path())) {
+            for (var input : inputJars) {
+                try (var inputJar = ZipFile.builder().setPath(input).get()) {
+                    var entries = inputJar.getEntriesInPhysicalOrder();
+                    while (entries.hasMoreElements()) {
+                        var entry = entries.nextElement();
+                        var name = getClassName(entry);
+                        if (name != null && include.test(name)) {
+                            outputJar.addRawArchiveEntry(entry, inputJar.getRawInputStream(entry));
+                        }
+                    }
+                }
+            }
+        }
+
+        return output.path();
+    }
+
+    /**
+     * Remap all uncached classes in a single {@link TinyRemapper}, writing them directly to the output jars.
+     *
+     * @param classCache The cache of remapped classes.
+     * @param mappings   The mappings to use.
+     * @param jobs       The jars to remap.
+     * @param options    Options controlling how the jars are remapped.
+     */
+    private static void remapAll(ClassRemapCache classCache, Path mappings, List<RemapJob> jobs, Options options) throws IOException {
+        var remapper = createRemapper(mappings, options);
+        List<MoreFiles.ScratchFile> scratchFiles = new ArrayList<>();
         try {
-            var tags = new InputTag[inputJars.size()];
+            var tags = new InputTag[jobs.size()];
 
-            for (int i = 0; i < inputJars.size(); i++) {
+            for (int i = 0; i < jobs.size(); i++) {
+                var job = jobs.get(i);
+                var input = List.of(job.input());
                 var tag = tags[i] = remapper.createInputTag();
-                remapper.readInputs(tag, inputJars.get(i));
-            }
 
-            for (int i = 0; i < inputJars.size(); i++) {
-                long start = System.nanoTime();
-                LOG.info("Remapping {} to {}", inputJars.get(i), outputJars.get(i));
-                transformJar(remapper, accessWidener, accessWidenedFiles, tags[i], inputJars.get(i), outputJars.get(i));
-                LOG.info("Remapping took {}.", Timing.formatSince(start));
+                // Only create filtered jars when we need to: if all (or none) of the classes are cached, the remapper
+                // can read the original jar.
+                if (job.cached().isEmpty()) {
+                    remapper.readInputs(tag, job.input());
+                } else if (job.uncached().isEmpty()) {
+                    remapper.readClassPath(job.input());
+                } else {
+                    var uncached = job.uncachedNames();
+                    var uncachedJar = MoreFiles.scratch(job.output());
+                    scratchFiles.add(uncachedJar);
+                    var cachedJar = MoreFiles.scratch(job.output());
+                    scratchFiles.add(cachedJar);
+
+                    remapper.readInputs(tag, writeClasses(input, uncached::contains, uncachedJar));
+                    remapper.readClassPath(writeClasses(input, x -> !uncached.contains(x), cachedJar));
+                }
             }
+
+            // Applying the remapper to an empty tag forces it to read the inputs, propagate mappings and remap every
+            // class. TinyRemapper.apply is synchronised, so applying each jar's tag afterwards just replays these
+            // remapped classes, one jar at a time. However, writing each jar on its own thread still lets us copy one
+            // jar's resources and cached classes (and compress its classes) while the other is being replayed.
+            remapper.apply((path, bytes) -> {
+            }, remapper.createInputTag());
+
+            writeJars(classCache, remapper, tags, jobs, options);
         } finally {
             remapper.finish();
+            for (var scratch : scratchFiles) scratch.close();
         }
     }
 
     /**
-     * Transform a single jar, deobfuscating and applying access transformers.
+     * Remap uncached classes in batches, saving the results to the {@link ClassRemapCache}.
+     * <p>
+     * Each batch is read into a new {@link TinyRemapper}, with all other classes on the classpath. Classpath classes
+     * only contribute to the remapper's class hierarchy and member index, and so take much less memory than input
+     * classes. This allows us to remap large jars with a bounded amount of memory, at the cost of re-reading the
+     * classpath for each batch.
      *
-     * @param remapper           The {@link TinyRemapper} instance.
-     * @param accessWidener      The collection of access wideners.
-     * @param accessWidenedFiles The set of files that should be transformed by the access widener.
-     * @param inputTag           The input tag for this file.
-     * @param input              The path of the input jar.
-     * @param output             The path of the output jar.
+     * @param classCache The cache of remapped classes.
+     * @param mappings   The mappings to use.
+     * @param jobs       The jars to remap.
+     * @param options    Options controlling how the jars are remapped.
+     */
+    private static void remapInBatches(ClassRemapCache classCache, Path mappings, List<RemapJob> jobs, Options options) throws IOException {
+        List<Map<String, String>> batches = new ArrayList<>();
+        {
+            Map<String, String> batch = new HashMap<>();
+            long batchSize = 0;
+            for (var job : jobs) {
+                for (var uncached : job.uncached()) {
+                    if (!batch.isEmpty() && batchSize + uncached.size() > options.remapMemoryLimit()) {
+                        batches.add(batch);
+                        batch = new HashMap<>();
+                        batchSize = 0;
+                    }
+
+                    batch.put(uncached.name(), uncached.key());
+                    batchSize += uncached.size();
+                }
+            }
+            if (!batch.isEmpty()) batches.add(batch);
+        }
+
+        var inputJars = jobs.stream().map(RemapJob::input).toList();
+        var scratchLocation = jobs.getFirst().output();
+        Files.createDirectories(scratchLocation.getParent());
+
+        for (int i = 0; i < batches.size(); i++) {
+            var batch = batches.get(i);
+            long start = System.nanoTime();
+            LOG.info("Remapping batch {} of {} ({} classes)", i + 1, batches.size(), batch.size());
+
+            var remapper = createRemapper(mappings, options);
+            try (var batchJar = MoreFiles.scratch(scratchLocation); var classpathJar = MoreFiles.scratch(scratchLocation)) {
+                var tag = remapper.createInputTag();
+                remapper.readInputs(tag, writeClasses(inputJars, batch::containsKey, batchJar));
+                remapper.readClassPath(writeClasses(inputJars, x -> !batch.containsKey(x), classpathJar));
+
+                remapper.apply((path, bytes) -> {
+                }, remapper.createInputTag());
+
+                var keys = getRemappedKeys(remapper, batch);
+                remapper.apply((path, bytes) -> {
+                    var key = keys.get(path);
+                    if (key != null) classCache.put(key, new ClassRemapCache.Entry(path, bytes));
+                }, tag);
+
+                // Wait for this batch to be written before starting the next one, so we don't hold on to its classes.
+                // We read these classes back when writing the final jars, so any failure here is fatal.
+                classCache.flush();
+            } finally {
+                remapper.finish();
+            }
+
+            LOG.info("Remapping batch {} took {}.", i + 1, Timing.formatSince(start));
+        }
+    }
+
+    /**
+     * Convert a map of original class names to cache keys, to one of remapped class names to cache keys.
+     *
+     * @param remapper The current remapper.
+     * @param keys     The cache key of each class, by their original name.
+     * @return The cache key of each class, by their remapped name.
+     */
+    private static Map<String, String> getRemappedKeys(TinyRemapper remapper, Map<String, String> keys) {
+        var names = remapper.getEnvironment().getRemapper();
+        Map<String, String> remappedKeys = new HashMap<>(keys.size());
+        for (var key : keys.entrySet()) remappedKeys.put(names.map(key.getKey()), key.getValue());
+        return remappedKeys;
+    }
+
+    /**
+     * Write the remapped jars concurrently.
+     * <p>
+     * Each jar is written on its own thread. Applying the remapper is serialised by {@link TinyRemapper} itself, so
+     * this only speeds up the rest of the work: copying resources and cached classes, and compressing the output.
+     *
+     * @param classCache The cache of remapped classes.
+     * @param remapper   The {@link TinyRemapper} instance, or {@code null} if all classes are cached.
+     * @param tags       The input tag for each job's uncached classes.
+     * @param jobs       The jars to write.
+     * @param options    Options controlling how the jars are remapped.
+     */
+    private static void writeJars(
+        ClassRemapCache classCache, @Nullable TinyRemapper remapper, InputTag[] tags, List<RemapJob> jobs, Options options
+    ) throws IOException {
+        var compressionThreads = Math.max(1, options.compressionThreads() / jobs.size());
+        List<Future<?>> tasks = new ArrayList<>(jobs.size());
+        try (var executor = Executors.newFixedThreadPool(jobs.size())) {
+            for (int i = 0; i < jobs.size(); i++) {
+                var tag = tags[i];
+                var job = jobs.get(i);
+                tasks.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    LOG.info("Remapping {} to {}", job.input(), job.output());
+                    remapJar(classCache, remapper, tag, job, compressionThreads);
+                    LOG.info("Remapping {} took {}.", job.output().getFileName(), Timing.formatSince(start));
+                    return null;
+                }));
+            }
+        }
+
+        for (var task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) throw ioException;
+                throw new IllegalStateException("Failed to remap jar", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while remapping jars");
+            }
+        }
+    }
+
+    /**
+     * Deobfuscate a single jar.
+     *
+     * @param classCache         The cache of remapped classes.
+     * @param remapper           The {@link TinyRemapper} instance, or {@code null} if all classes are cached.
+     * @param inputTag           The input tag for this jar's uncached classes, or {@code null} if all classes are cached.
+     * @param job                The jar to remap.
+     * @param compressionThreads The number of threads to use when compressing classes.
      */
-    private static void transformJar(
-        TinyRemapper remapper, AccessWidener accessWidener, Set<String> accessWidenedFiles,
-        InputTag inputTag, Path input, Path output
+    private static void remapJar(
+        ClassRemapCache classCache, @Nullable TinyRemapper remapper, @Nullable InputTag inputTag, RemapJob job, int compressionThreads
     ) throws IOException {
-        Files.createDirectories(output.getParent());
+        Files.createDirectories(job.output().getParent());
+
+        try (var scratch = MoreFiles.scratch(job.output());
+             var inputJar = ZipFile.builder().setPath(job.input()).get();
+             var jarWriter = new ParallelJarWriter(compressionThreads)) {
+            // Copy non-class files as-is.
+            var entries = inputJar.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                if (entry.isDirectory() || entry.getName().endsWith(".class")) continue;
+                jarWriter.addRaw(inputJar, entry);
+            }
+
+            // Copy any previously remapped classes from the cache. These are only read as the jar is written, so we
+            // don't hold every cached class in memory at once.
+            for (var key : job.cached()) {
+                var name = classCache.getName(key);
+                if (name == null) throw new IOException("Remapped class " + key + " is missing from the cache");
+                jarWriter.addDeferred(name + ".class", () -> {
+                    var cached = classCache.get(key);
+                    if (cached == null) throw new IOException("Remapped class " + key + " is missing from the cache");
+                    return cached.contents();
+                });
+            }
 
-        try (var scratch = MoreFiles.scratchZip(output)) {
-            try (var jarWriter = new OutputConsumerPath.Builder(scratch.path()).build()) {
-                jarWriter.addNonClassFiles(input);
+            // And remap everything else, saving the results to the cache.
+            if (remapper != null && inputTag != null && !job.uncached().isEmpty()) {
+                Map<String, String> uncachedKeys = new HashMap<>(job.uncached().size());
+                for (var uncached : job.uncached()) uncachedKeys.put(uncached.name(), uncached.key());
+                var keys = getRemappedKeys(remapper, uncachedKeys);
 
                 remapper.apply((path, bytes) -> {
-                    if (accessWidenedFiles.contains(path)) bytes = transformClass(accessWidener, bytes);
-                    jarWriter.accept(path, bytes);
+                    jarWriter.add(path + ".class", bytes);
+
+                    var key = keys.get(path);
+                    if (key != null) classCache.put(key, new ClassRemapCache.Entry(path, bytes));
                 }, inputTag);
             }
 
+            try (var stream = new ZipArchiveOutputStream(scratch.openDigesting())) {
+                jarWriter.writeTo(stream);
+            }
+
             scratch.commit();
         }
     }
 
+    /**
+     * Split our deobfuscated jars into classes and resources, applying access wideners to the classes.
+     *
+     * @param accessWideners The access wideners to apply.
+     * @param inputJars      The deobfuscated jars.
+     * @param classJars      The paths to write the classes to. Must be the same length as {@code inputJars}.
+     * @param resourceJars   The paths to write the resources to. Must be the same length as {@code inputJars}.
+     * @param options        Options controlling how the jars are transformed.
+     */
+    private static void splitJars(
+        List<FileFingerprint> accessWideners, List<Path> inputJars, List<Path> classJars, List<Path> resourceJars, Options options
+    ) throws IOException {
+        if (inputJars.size() != classJars.size() || inputJars.size() != resourceJars.size()) {
+            throw new IllegalArgumentException("Jars must be the same length");
+        }
+
+        // Read all our access wideners, then compute the set of all files we'll need to transform.
+        var accessWidener = new AccessWidener();
+        {
+            var accessWidenerReader = new AccessWidenerReader(accessWidener);
+            for (var widener : accessWideners) {
+                try (var reader = Files.newBufferedReader(widener.path())) {
+                    accessWidenerReader.read(reader);
+                }
+            }
+        }
+
+        var accessWidenedFiles = accessWidener.getTargets().stream()
+            .map(x -> x.replace('.', '/') + ".class")
+            .collect(Collectors.toUnmodifiableSet());
+
+        for (int i = 0; i < inputJars.size(); i++) {
+            var classJar = classJars.get(i);
+            var resourceJar = resourceJars.get(i);
+            Files.createDirectories(classJar.getParent());
+            Files.createDirectories(resourceJar.getParent());
+
+            try (var classScratch = MoreFiles.scratch(classJar); var resourceScratch = MoreFiles.scratch(resourceJar)) {
+                splitJar(accessWidener, accessWidenedFiles, inputJars.get(i), classScratch, resourceScratch, options.remapperThreads());
+
+                classScratch.commit();
+                resourceScratch.commit();
+            }
+        }
+    }
+
+    /**
+     * Split a single jar into classes and resources, applying access wideners to the classes. Files which are not
+     * access widened are copied as-is, without decompressing them.
+     * <p>
+     * Access widened classes are transformed in parallel, and then written back in their original order.
+     *
+     * @param accessWidener      The collection of access wideners.
+     * @param accessWidenedFiles The set of files that should be transformed by the access widener.
+     * @param input              The path of the input jar.
+     * @param classOutput        The scratch file to write the classes to.
+     * @param resourceOutput     The scratch file to write the resources to.
+     * @param threads            The number of threads to transform classes with.
+     */
+    private static void splitJar(
+        AccessWidener accessWidener, Set<String> accessWidenedFiles, Path input,
+        MoreFiles.ScratchFile classOutput, MoreFiles.ScratchFile resourceOutput, int threads
+    ) throws IOException {
+        try (var inputJar = ZipFile.builder().setPath(input).get();
+             var executor = Executors.newFixedThreadPool(threads)) {
+            // Find which directories belong in each jar, and start transforming any access-widened classes.
+            Set<String> classDirectories = new HashSet<>(), resourceDirectories = new HashSet<>();
+            Map<String, Future<byte[]>> transformed = new HashMap<>();
+            var entries = inputJar.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                if (entry.isDirectory()) continue;
+
+                var name = entry.getName();
+                addParentDirectories(name.endsWith(".class") ? classDirectories : resourceDirectories, name);
+                if (!accessWidenedFiles.contains(name)) continue;
+
+                byte[] contents;
+                try (var stream = inputJar.getInputStream(entry)) {
+                    contents = stream.readAllBytes();
+                }
+                transformed.put(name, executor.submit(() -> transformClass(accessWidener, contents)));
+            }
+
+            try (var classJar = new ZipArchiveOutputStream(classOutput.openDigesting());
+                 var resourceJar = new ZipArchiveOutputStream(resourceOutput.openDigesting())) {
+                entries = inputJar.getEntriesInPhysicalOrder();
+                while (entries.hasMoreElements()) {
+                    var entry = entries.nextElement();
+                    var name = entry.getName();
+
+                    if (entry.isDirectory()) {
+                        if (classDirectories.contains(name)) classJar.addRawArchiveEntry(entry, inputJar.getRawInputStream(entry));
+                        if (resourceDirectories.contains(name)) resourceJar.addRawArchiveEntry(entry, inputJar.getRawInputStream(entry));
+                        continue;
+                    }
+
+                    if (!name.endsWith(".class")) {
+                        resourceJar.addRawArchiveEntry(entry, inputJar.getRawInputStream(entry));
+                        continue;
+                    }
+
+                    var contents = transformed.get(name);
+                    if (contents == null) {
+                        classJar.addRawArchiveEntry(entry, inputJar.getRawInputStream(entry));
+                        continue;
+                    }
+
+                    var newEntry = new ZipArchiveEntry(name);
+                    newEntry.setTime(entry.getTime());
+                    classJar.putArchiveEntry(newEntry);
+                    classJar.write(getTransformed(contents));
+                    classJar.closeArchiveEntry();
+                }
+            }
+        }
+    }
+
+    private static void addParentDirectories(Set<String> directories, String name) {
+        for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1)) directories.add(name.substring(0, i + 1));
+    }
+
+    private static byte[] getTransformed(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to apply access wideners", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while applying access wideners");
+        }
+    }
+
     private static byte[] transformClass(AccessWidener accessWidener, byte[] bytes) {
         ClassReader reader = new ClassReader(bytes);
         ClassWriter writer = new ClassWriter(reader, 0);
@@ -220,7 +824,8 @@ public final class TransformedMinecraftProvider {
         writeMinecraftPom(
             mavenPath, common, "Minecraft " + version + " (common)",
             "Common files for Minecraft " + version + ".",
-            artifacts.common().dependencies().stream().map(MavenArtifact::parse)
+            artifacts.common().dependencies().stream().map(MavenArtifact::parse),
+            Stream.of()
         );
         writeMinecraftPom(
             mavenPath, clientOnly, "Minecraft " + version + " (client only)",
@@ -228,12 +833,15 @@ public final class TransformedMinecraftProvider {
             Stream.concat(
                 artifacts.client().dependencies().stream().map(MavenArtifact::parse),
                 Stream.of(MavenArtifact.main(common))
-            )
+            ),
+            // Only the common classes are inherited transitively, so also pull in the common resources at runtime.
+            Stream.of(new MavenArtifact(common, RESOURCES_CLASSIFIER, null))
         );
     }
 
     private static void writeMinecraftPom(
-        Path mavenPath, MavenRelease module, String displayName, String description, Stream<MavenArtifact> dependencies
+        Path mavenPath, MavenRelease module, String displayName, String description,
+        Stream<MavenArtifact> dependencies, Stream<MavenArtifact> runtimeDependencies
     ) throws IOException {
         var pom = new PomWriter(module.group(), module.module(), module.version());
         pom.setName(displayName);
@@ -241,6 +849,7 @@ public final class TransformedMinecraftProvider {
         pom.setUrl("https://www.minecraft.net/en-us");
 
         dependencies.forEach(d -> pom.addDependency(d, "compile", false));
+        runtimeDependencies.forEach(d -> pom.addDependency(d, "runtime", false));
 
         try (var scratch = MoreFiles.scratch(module.getPomLocation(mavenPath))) {
             try (var writer = Files.newBufferedWriter(scratch.path())) {
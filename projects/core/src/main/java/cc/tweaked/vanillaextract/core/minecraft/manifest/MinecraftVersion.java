@@ -93,7 +93,7 @@ public record MinecraftVersion(
      */
     public record Download(String sha1, long size, String url) {
         public FileDownload.Builder downloadTo(Path destination) {
-            return FileDownload.builder(url(), destination).expectSha1(sha1);
+            return FileDownload.builder(url(), destination).expectSha1(sha1).expectSize(size);
         }
 
         public FileDownload.Builder downloadLike(Path folder, String prefix, String ext) {
@@ -133,7 +133,7 @@ public record MinecraftVersion(
      */
     public record LibraryArtifact(String path, String sha1, long size, String url) {
         public FileDownload.Builder downloadTo(Path destination) {
-            return FileDownload.builder(url(), destination).expectSha1(sha1);
+            return FileDownload.builder(url(), destination).expectSha1(sha1).expectSize(size);
         }
     }
 
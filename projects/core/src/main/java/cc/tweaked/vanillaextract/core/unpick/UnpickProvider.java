@@ -17,6 +17,7 @@ import net.fabricmc.mappingio.adapter.MappingSourceNsSwitch;
 import net.fabricmc.mappingio.format.MappingFormat;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 import net.fabricmc.tinyremapper.FileSystemReference;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.objectweb.asm.ClassReader;
@@ -32,6 +33,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.CRC32;
 
 public final class UnpickProvider implements Closeable {
     private static final Logger LOG = LoggerFactory.getLogger(UnpickProvider.class);
@@ -68,12 +70,21 @@ public final class UnpickProvider implements Closeable {
             .build();
     }
 
+    /**
+     * Unpick a jar.
+     * <p>
+     * The resulting jar is only used as an input to the decompiler, so is written without any compression. Classes are
+     * written as soon as they are unpicked, so only one is held in memory at once.
+     *
+     * @param inputPath  The jar to unpick.
+     * @param outputPath The path to write the unpicked jar to.
+     * @throws IOException If the jar could not be read or written.
+     */
     public void unpick(Path inputPath, Path outputPath) throws IOException {
         try (var scratch = MoreFiles.scratchZip(outputPath)) {
-            List<FileSystemReference> toClose = new ArrayList<>();
             try (
                 var outputJar = new ZipArchiveOutputStream(scratch.path());
-                var inputJar = ZipFile.builder().setPath(inputPath).get();
+                var inputJar = ZipFile.builder().setPath(inputPath).get()
             ) {
                 var entries = inputJar.getEntries();
                 while (entries.hasMoreElements()) {
@@ -93,9 +104,10 @@ public final class UnpickProvider implements Closeable {
                         // And write the new one
                         var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
                         node.accept(writer);
+                        var contents = writer.toByteArray();
 
-                        outputJar.putArchiveEntry(entry);
-                        outputJar.write(writer.toByteArray());
+                        outputJar.putArchiveEntry(createStoredEntry(entry, contents));
+                        outputJar.write(contents);
                         outputJar.closeArchiveEntry();
                     }
                 }
@@ -105,6 +117,19 @@ public final class UnpickProvider implements Closeable {
         }
     }
 
+    private static ZipArchiveEntry createStoredEntry(ZipArchiveEntry original, byte[] contents) {
+        var crc = new CRC32();
+        crc.update(contents);
+
+        var entry = new ZipArchiveEntry(original.getName());
+        entry.setTime(original.getTime());
+        entry.setMethod(ZipArchiveEntry.STORED);
+        entry.setSize(contents.length);
+        entry.setCompressedSize(contents.length);
+        entry.setCrc(crc.getValue());
+        return entry;
+    }
+
     @Override
     public void close() throws IOException {
         for (var ref : toClose) ref.close();
@@ -0,0 +1,221 @@
+package cc.tweaked.vanillaextract.core.util;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A persistent cache of file hashes, used when the file system does not support user-defined attributes (such as
+ * tmpfs, some overlay file systems and NFS).
+ * <p>
+ * Each directory has its own index, stored as an append-only log in {@value #INDEX_NAME}. Every line records the
+ * hash of a file, along with the file's size, modification time and {@linkplain BasicFileAttributes#fileKey() file key}
+ * at the time it was hashed. A hash is only used if these still match the file on disk.
+ * <p>
+ * As this is just a cache, we are not especially careful about concurrent writers: at worst, an entry is lost and the
+ * file is hashed again.
+ *
+ * @see MoreFiles#getSha1(Path)
+ * @see MoreFiles#getSha256(Path)
+ */
+final class FileHashIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(FileHashIndex.class);
+
+    static final String INDEX_NAME = ".vanilla-extract-hashes";
+
+    /**
+     * Rewrite the log when it has this many more lines than live entries.
+     */
+    private static final int COMPACT_THRESHOLD = 64;
+
+    private static final ConcurrentMap<Path, Index> indexes = new ConcurrentHashMap<>();
+
+    private FileHashIndex() {
+    }
+
+    /**
+     * Look up the hash of a file.
+     *
+     * @param path      The file to look up.
+     * @param algorithm The hash algorithm.
+     * @return The cached hash, or {@code null} if not present or out-of-date.
+     */
+    static @Nullable String get(Path path, String algorithm) {
+        var stat = Stat.of(path);
+        if (stat == null) return null;
+
+        var index = getIndex(path);
+        if (index == null) return null;
+
+        synchronized (index) {
+            var entry = index.get(path.getFileName().toString(), algorithm);
+            return entry != null && entry.stat().equals(stat) ? entry.hash() : null;
+        }
+    }
+
+    /**
+     * Store the hash of a file.
+     *
+     * @param path      The file to update.
+     * @param algorithm The hash algorithm.
+     * @param hash      The file's hash.
+     * @return If the hash was successfully stored.
+     */
+    static boolean put(Path path, String algorithm, String hash) {
+        var name = path.getFileName().toString();
+        if (name.indexOf('\t') >= 0 || name.indexOf('\n') >= 0) return false;
+
+        var stat = Stat.of(path);
+        if (stat == null) return false;
+
+        var index = getIndex(path);
+        if (index == null) return false;
+
+        synchronized (index) {
+            try {
+                index.put(new Entry(name, algorithm, stat, hash));
+                return true;
+            } catch (IOException e) {
+                LOG.debug("Cannot write hash index {}.", index.location, e);
+                return false;
+            }
+        }
+    }
+
+    private static @Nullable Index getIndex(Path path) {
+        var parent = path.toAbsolutePath().getParent();
+        return parent == null ? null : indexes.computeIfAbsent(parent, x -> new Index(x.resolve(INDEX_NAME)));
+    }
+
+    /**
+     * The file metadata we use to determine if a file has changed.
+     *
+     * @param size     The file's size.
+     * @param modified The file's modification time, in milliseconds.
+     * @param fileKey  The file's {@linkplain BasicFileAttributes#fileKey() file key}, or {@code "-"} if not available.
+     */
+    private record Stat(long size, long modified, String fileKey) {
+        static @Nullable Stat of(Path path) {
+            try {
+                var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                var fileKey = attributes.fileKey();
+                return new Stat(
+                    attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    fileKey == null ? "-" : fileKey.toString().replace('\t', ' ')
+                );
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    private record Entry(String name, String algorithm, Stat stat, String hash) {
+        static @Nullable Entry parse(String line) {
+            var parts = line.split("\t");
+            if (parts.length != 6) return null;
+            try {
+                return new Entry(parts[0], parts[1], new Stat(Long.parseLong(parts[2]), Long.parseLong(parts[3]), parts[4]), parts[5]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        String key() {
+            return algorithm + "\t" + name;
+        }
+
+        String toLine() {
+            return name + "\t" + algorithm + "\t" + stat.size() + "\t" + stat.modified() + "\t" + stat.fileKey() + "\t" + hash + "\n";
+        }
+    }
+
+    /**
+     * The index for a single directory.
+     */
+    private static final class Index {
+        final Path location;
+        private final Map<String, Entry> entries = new HashMap<>();
+
+        /**
+         * The size of the log we have read, or {@code -1} if not read. If the file has changed size, another process
+         * has written to it, and so we need to read it again.
+         */
+        private long readSize = -1;
+
+        Index(Path location) {
+            this.location = location;
+        }
+
+        @Nullable Entry get(String name, String algorithm) {
+            refresh();
+            return entries.get(algorithm + "\t" + name);
+        }
+
+        void put(Entry entry) throws IOException {
+            refresh();
+
+            var existing = entries.put(entry.key(), entry);
+            if (entry.equals(existing)) return;
+
+            Files.writeString(location, entry.toLine(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            readSize = getSize();
+        }
+
+        private void refresh() {
+            var size = getSize();
+            if (size == readSize) return;
+
+            entries.clear();
+            int lines = 0;
+            try (var reader = Files.newBufferedReader(location, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines++;
+                    var entry = Entry.parse(line);
+                    if (entry != null) entries.put(entry.key(), entry);
+                }
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                readSize = 0;
+                return;
+            } catch (IOException e) {
+                LOG.debug("Cannot read hash index {}.", location, e);
+            }
+
+            readSize = size;
+            if (lines > entries.size() + COMPACT_THRESHOLD) compact();
+        }
+
+        private void compact() {
+            try (var scratch = MoreFiles.scratch(location)) {
+                var contents = new StringBuilder();
+                for (var entry : entries.values()) contents.append(entry.toLine());
+                Files.writeString(scratch.path(), contents, StandardCharsets.UTF_8);
+                scratch.commit();
+                readSize = getSize();
+            } catch (IOException e) {
+                LOG.debug("Cannot compact hash index {}.", location, e);
+            }
+        }
+
+        private long getSize() {
+            try {
+                return Files.size(location);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+}
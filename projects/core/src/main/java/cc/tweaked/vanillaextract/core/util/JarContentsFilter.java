@@ -6,11 +6,19 @@ import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32;
 
 /**
  * Filter the contents of a jar, either splitting or merging them.
@@ -20,6 +28,9 @@ public class JarContentsFilter {
 
     /**
      * Split the Minecraft jars.
+     * <p>
+     * This sorts the central directory of each jar, and then walks them together in a single pass, copying each
+     * (still compressed) entry straight into the appropriate output jar.
      *
      * @param serverJar  The server jar.
      * @param clientJar  The client jar.
@@ -29,88 +40,174 @@ public class JarContentsFilter {
      */
     public static void split(Path serverJar, Path clientJar, Path common, Path clientOnly) throws IOException {
         try (var serverRoot = ZipFile.builder().setPath(serverJar).get();
-             var clientRoot = ZipFile.builder().setPath(clientJar).get()) {
+             var clientRoot = ZipFile.builder().setPath(clientJar).get();
+             var commonScratch = MoreFiles.scratch(common);
+             var clientOnlyScratch = MoreFiles.scratch(clientOnly)) {
+
+            var serverEntries = getSortedFiles(serverRoot);
+            var clientEntries = getSortedFiles(clientRoot);
+
+            // Files which appear in both jars, but whose CRC or size differ.
+            List<Pair<ZipArchiveEntry, ZipArchiveEntry>> mismatched = new ArrayList<>();
+
+            try (var commonOutput = createJar(commonScratch);
+                 var clientOnlyOutput = createJar(clientOnlyScratch)) {
+                int serverIdx = 0;
+                for (var clientEntry : clientEntries) {
+                    var serverEntry = serverIdx < serverEntries.size() ? serverEntries.get(serverIdx) : null;
+                    var order = serverEntry == null ? 1 : serverEntry.getName().compareTo(clientEntry.getName());
+
+                    if (order < 0) {
+                        throw new IllegalStateException(serverEntry.getName() + " appears in the server jar, but not the client jar");
+                    } else if (order == 0) {
+                        if (!hasSameMetadata(serverEntry, clientEntry)) mismatched.add(new Pair<>(serverEntry, clientEntry));
+                        commonOutput.addRawArchiveEntry(serverEntry, serverRoot.getRawInputStream(serverEntry));
+                        serverIdx++;
+                    } else {
+                        clientOnlyOutput.addRawArchiveEntry(clientEntry, clientRoot.getRawInputStream(clientEntry));
+                    }
+                }
 
-            var serverEntries = getFiles(serverRoot);
-            var clientEntries = getFiles(clientRoot);
-            checkConsistent(serverEntries, clientEntries);
+                if (serverIdx < serverEntries.size()) {
+                    throw new IllegalStateException(serverEntries.get(serverIdx).getName() + " appears in the server jar, but not the client jar");
+                }
+            }
 
-            var clientOnlyEntries = new HashMap<>(clientEntries);
-            clientOnlyEntries.keySet().removeAll(serverEntries.keySet());
+            checkConsistent(serverRoot, clientRoot, mismatched);
 
-            copyEntries(serverRoot, common, serverEntries);
-            copyEntries(clientRoot, clientOnly, clientOnlyEntries);
+            commonScratch.commit();
+            clientOnlyScratch.commit();
         }
     }
 
-    private static void checkConsistent(Map<String, ZipEntry> server, Map<String, ZipEntry> client) {
-        for (var clientEntry : client.entrySet()) {
-            var path = clientEntry.getKey();
-            var clientHash = clientEntry.getValue().digest();
+    /**
+     * Compare the CRC and size from each jar's central directory, which is enough to show that almost all files are
+     * identical.
+     *
+     * @param server The entry in the server jar.
+     * @param client The entry in the client jar.
+     * @return Whether these entries (probably) have the same contents.
+     */
+    private static boolean hasSameMetadata(ZipArchiveEntry server, ZipArchiveEntry client) {
+        return server.getCrc() != -1 && server.getSize() != -1
+            && server.getCrc() == client.getCrc() && server.getSize() == client.getSize();
+    }
 
-            var serverEntry = server.get(path);
-            if (serverEntry != null && !clientHash.equals(serverEntry.digest())) {
-                // This *should* be an error, but Minecraft 1.21.9/1.21.10 has different visibility on one method in
-                // MinecraftServer. For now, just do a warning.
-                LOG.warn("Client and server have different contents for {}", path);
+    /**
+     * Check that files in both jars have the same contents. Only files where the metadata disagrees are read and
+     * hashed.
+     *
+     * @param serverRoot The server jar.
+     * @param clientRoot The client jar.
+     * @param mismatched Pairs of server and client entries to compare.
+     * @throws IOException If the files could not be read.
+     */
+    private static void checkConsistent(
+        ZipFile serverRoot, ZipFile clientRoot, List<Pair<ZipArchiveEntry, ZipArchiveEntry>> mismatched
+    ) throws IOException {
+        if (mismatched.isEmpty()) return;
+
+        List<Future<Boolean>> tasks = new ArrayList<>(mismatched.size());
+        try (var executor = Executors.newFixedThreadPool(Math.min(mismatched.size(), Runtime.getRuntime().availableProcessors()))) {
+            for (var pair : mismatched) {
+                tasks.add(executor.submit(() -> digestEntry(serverRoot, pair.first()).equals(digestEntry(clientRoot, pair.second()))));
             }
         }
 
-        for (var path : server.keySet()) {
-            if (!client.containsKey(path)) {
-                throw new IllegalStateException(path + " appears in the server jar, but not the client jar");
+        for (int i = 0; i < tasks.size(); i++) {
+            var path = mismatched.get(i).first().getName();
+
+            boolean same;
+            try {
+                same = tasks.get(i).get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) throw ioException;
+                throw new IllegalStateException("Failed to compare " + path, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while comparing jars");
+            }
+
+            if (!same) {
+                // This *should* be an error, but Minecraft 1.21.9/1.21.10 has different visibility on one method in
+                // MinecraftServer. For now, just do a warning.
+                LOG.warn("Client and server have different contents for {}", path);
             }
         }
     }
 
-    private record ZipEntry(ZipArchiveEntry entry, String digest) {
+    private static String digestEntry(ZipFile file, ZipArchiveEntry entry) throws IOException {
+        var digest = MoreDigests.createMd5();
+        try (var stream = file.getInputStream(entry)) {
+            MoreDigests.digestStream(digest, stream);
+        }
+        return MoreDigests.toHexString(digest);
     }
 
-    private static Map<String, ZipEntry> getFiles(ZipFile file) throws IOException {
-        Map<String, ZipEntry> paths = new HashMap<>();
+    /**
+     * Get all files in a jar, sorted by name.
+     *
+     * @param file The jar file.
+     * @return The sorted list of entries.
+     */
+    private static List<ZipArchiveEntry> getSortedFiles(ZipFile file) {
+        List<ZipArchiveEntry> files = new ArrayList<>();
 
         var entries = file.getEntries();
         while (entries.hasMoreElements()) {
             var entry = entries.nextElement();
             if (entry.isDirectory()) continue;
             if (entry.getName().startsWith("META-INF")) continue;
+            files.add(entry);
+        }
 
-            var digest = MoreDigests.createMd5();
-            try (var stream = file.getInputStream(entry)) {
-                MoreDigests.digestStream(digest, stream);
+        files.sort(Comparator.comparing(ZipArchiveEntry::getName));
+        for (int i = 1; i < files.size(); i++) {
+            if (files.get(i - 1).getName().equals(files.get(i).getName())) {
+                throw new IllegalStateException("Duplicate zip entry " + files.get(i).getName());
             }
-
-            var existing = paths.putIfAbsent(entry.getName(), new ZipEntry(entry, MoreDigests.toHexString(digest)));
-            if (existing != null) throw new IllegalStateException("Duplicate zip entry " + entry.getName());
         }
 
-        return Collections.unmodifiableMap(paths);
+        return files;
     }
 
-    private static void copyEntries(ZipFile source, Path destination, Map<String, ZipEntry> files) throws IOException {
-        List<ZipEntry> sortedFiles = new ArrayList<>(files.values());
-        sortedFiles.sort(Comparator.comparing(a -> a.entry().getName()));
-
-        try (var scratch = MoreFiles.scratchZip(destination)) {
-            try (var output = new ZipArchiveOutputStream(scratch.path())) {
-                // Write the manifest.
-                var manifest = new Manifest();
-                manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
-
-                var manifestEntry = new ZipArchiveEntry("META-INF/MANIFEST.MF");
-                manifestEntry.setTime(0);
-
-                output.putArchiveEntry(manifestEntry);
-                manifest.write(output);
-                output.closeArchiveEntry();
-
-                // Write each file within the jar
-                for (var file : sortedFiles) {
-                    output.addRawArchiveEntry(file.entry(), source.getRawInputStream(file.entry()));
-                }
-            }
-
-            scratch.commit();
+    /**
+     * Create a new jar file, with a basic manifest.
+     * <p>
+     * The jar is written as a stream, so its hash is computed as it is written (see
+     * {@link MoreFiles.ScratchFile#openDigesting()}).
+     *
+     * @param scratch The scratch file to write the jar to.
+     * @return The jar's output stream.
+     * @throws IOException If the jar could not be created.
+     */
+    private static ZipArchiveOutputStream createJar(MoreFiles.ScratchFile scratch) throws IOException {
+        var output = new ZipArchiveOutputStream(scratch.openDigesting());
+        try {
+            var manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            var manifestBytes = new ByteArrayOutputStream();
+            manifest.write(manifestBytes);
+
+            // Store the manifest uncompressed. As we know its size and CRC up front, this avoids writing a data
+            // descriptor.
+            var crc = new CRC32();
+            crc.update(manifestBytes.toByteArray());
+
+            var manifestEntry = new ZipArchiveEntry("META-INF/MANIFEST.MF");
+            manifestEntry.setTime(ParallelJarWriter.ENTRY_TIME);
+            manifestEntry.setMethod(ZipArchiveEntry.STORED);
+            manifestEntry.setSize(manifestBytes.size());
+            manifestEntry.setCrc(crc.getValue());
+
+            output.putArchiveEntry(manifestEntry);
+            manifestBytes.writeTo(output);
+            output.closeArchiveEntry();
+        } catch (IOException e) {
+            output.close();
+            throw e;
         }
+
+        return output;
     }
 }
@@ -4,8 +4,10 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.function.Supplier;
@@ -78,15 +80,41 @@ public class MoreDigests {
     }
 
     /**
-     * Digest a file.
+     * Create a new 128-bit MurmurHash3 digest. This is not a cryptographic hash, but is much faster than the
+     * alternatives, and so is suitable for detecting changes to local files.
      *
-     * @param digest The digester.
-     * @param path   The path of the file.
+     * @return The new message digest.
+     */
+    public static MessageDigest createMurmur3() {
+        return new Murmur3Digest();
+    }
+
+    /**
+     * The size of the buffer used when reading files.
+     */
+    private static final int FILE_BUFFER_SIZE = 1 << 18;
+
+    /**
+     * Digest a file with several algorithms at once.
+     * <p>
+     * The file is only read once, into a single buffer, which is then passed to each digest. This avoids re-reading
+     * large jars when more than one hash is needed.
+     * <p>
+     * This uses a heap buffer rather than a direct one, as direct buffers are only freed once garbage collected, and
+     * files may be digested from many threads at once.
+     *
+     * @param path    The path of the file.
+     * @param digests The digesters.
      * @throws IOException If the file could not be read.
      */
-    public static void digestFile(MessageDigest digest, Path path) throws IOException {
-        try (var stream = Files.newInputStream(path)) {
-            digestStream(digest, stream);
+    public static void digestFile(Path path, MessageDigest... digests) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(channel.size(), FILE_BUFFER_SIZE)));
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                for (var digest : digests) digest.update(buffer.duplicate());
+                buffer.clear();
+            }
         }
     }
 
@@ -6,6 +6,7 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -15,6 +16,8 @@ import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -25,6 +28,9 @@ public final class MoreFiles {
 
     private static final Logger LOG = LoggerFactory.getLogger(MoreFiles.class);
     private static final String SHA1_ATTR = "VanillaExtractSha1";
+    private static final String SHA256_ATTR = "VanillaExtractSha256";
+    private static final String SHA1 = "sha1";
+    private static final String SHA256 = "sha256";
 
     private MoreFiles() {
     }
@@ -45,13 +51,16 @@ public final class MoreFiles {
 
     /**
      * Get the SHA1 hash of the given path.
+     * <p>
+     * This is cached in the file's user-defined attributes or, if those are not supported, in a {@linkplain FileHashIndex
+     * per-directory index}.
      *
      * @param path The path to check.
      * @return The hash, or {@code null} if it could not be computed.
      */
     public static String getSha1(Path path) throws IOException {
-        var attr = getAttribute(path, SHA1_ATTR);
-        if (attr != null) return attr;
+        var cached = getCachedHash(path, SHA1_ATTR, SHA1);
+        if (cached != null) return cached;
 
         var sha = computeSha1(path);
         setSha1(path, sha);
@@ -66,7 +75,7 @@ public final class MoreFiles {
      */
     public static String computeSha1(Path path) throws IOException {
         var digest = MoreDigests.createSha1();
-        MoreDigests.digestFile(digest, path);
+        MoreDigests.digestFile(path, digest);
         return MoreDigests.toHexString(digest);
     }
 
@@ -77,7 +86,7 @@ public final class MoreFiles {
      * @param hash The SHA1 hash of this file.
      */
     public static void setSha1(Path path, String hash) {
-        if (!setAttribute(path, SHA1_ATTR, hash)) LOG.warn("Cannot cache hash for {}.", path);
+        setCachedHash(path, SHA1_ATTR, SHA1, hash);
     }
 
     /**
@@ -98,22 +107,64 @@ public final class MoreFiles {
      */
     public static String computeMd5(Path path) throws IOException {
         var digest = MoreDigests.createMd5();
-        MoreDigests.digestFile(digest, path);
+        MoreDigests.digestFile(path, digest);
         return MoreDigests.toHexString(digest);
     }
 
     /**
-     * Compute the SHA1 hash of the given path.
+     * Get the SHA-256 hash of the given path. This is cached in the same way as {@link #getSha1(Path)}.
+     *
+     * @param path The path to check.
+     * @return The hash.
+     * @throws IOException If the hash could not be computed.
+     */
+    public static String getSha256(Path path) throws IOException {
+        var cached = getCachedHash(path, SHA256_ATTR, SHA256);
+        if (cached != null) return cached;
+
+        // Files we need the SHA-256 of are normally fingerprinted with SHA1 too, so compute both in a single pass.
+        var sha1 = MoreDigests.createSha1();
+        var sha256 = MoreDigests.createSha256();
+        MoreDigests.digestFile(path, sha1, sha256);
+
+        var sha256Hash = MoreDigests.toHexString(sha256);
+        setSha256(path, sha256Hash);
+        if (getCachedHash(path, SHA1_ATTR, SHA1) == null) setSha1(path, MoreDigests.toHexString(sha1));
+        return sha256Hash;
+    }
+
+    /**
+     * Store the SHA-256 hash of the given path.
+     *
+     * @param path The file to update.
+     * @param hash The SHA-256 hash of this file.
+     */
+    public static void setSha256(Path path, String hash) {
+        setCachedHash(path, SHA256_ATTR, SHA256, hash);
+    }
+
+    /**
+     * Compute the SHA-256 hash of the given path.
      *
      * @param path The path of the file to read.
      * @return The hash.
      */
     public static String computeSha256(Path path) throws IOException {
         var digest = MoreDigests.createSha256();
-        MoreDigests.digestFile(digest, path);
+        MoreDigests.digestFile(path, digest);
         return MoreDigests.toHexString(digest);
     }
 
+    private static @Nullable String getCachedHash(Path path, String attribute, String algorithm) {
+        var hash = getAttribute(path, attribute);
+        return hash != null ? hash : FileHashIndex.get(path, algorithm);
+    }
+
+    private static void setCachedHash(Path path, String attribute, String algorithm, String hash) {
+        if (setAttribute(path, attribute, hash)) return;
+        if (!FileHashIndex.put(path, algorithm, hash)) LOG.warn("Cannot cache hash for {}.", path);
+    }
+
     /**
      * Attempt to read a custom file attribute.
      *
@@ -213,6 +264,19 @@ public final class MoreFiles {
         }
     }
 
+    /**
+     * Write a value to a JSON file.
+     *
+     * @param path  The path to the file.
+     * @param value The value to write.
+     * @throws IOException If the file could not be written.
+     */
+    public static void writeJson(Path path, Object value) throws IOException {
+        try (var stream = Files.newBufferedWriter(path)) {
+            GSON.toJson(value, stream);
+        }
+    }
+
     /**
      * Create a temporary "scratch" file, which will replace {@code destination} when finished.
      *
@@ -245,11 +309,57 @@ public final class MoreFiles {
 
     /**
      * A temporary scratch file, marking some in-progress work which will eventually be written to {@link #destination()}.
-     *
-     * @param path        The path to the scratch file.
-     * @param destination The eventual destination
      */
-    public record ScratchFile(Path path, Path destination) implements Closeable {
+    public static final class ScratchFile implements Closeable {
+        private final Path path;
+        private final Path destination;
+        private @Nullable MessageDigest sha1;
+
+        /**
+         * Create a new scratch file.
+         *
+         * @param path        The path to the scratch file.
+         * @param destination The eventual destination
+         */
+        public ScratchFile(Path path, Path destination) {
+            this.path = path;
+            this.destination = destination;
+        }
+
+        /**
+         * The path to the scratch file.
+         *
+         * @return The path to the scratch file.
+         */
+        public Path path() {
+            return path;
+        }
+
+        /**
+         * The eventual destination of this file.
+         *
+         * @return The file's destination.
+         */
+        public Path destination() {
+            return destination;
+        }
+
+        /**
+         * Open a stream to write to this scratch file, computing the file's SHA1 hash as it is written.
+         * <p>
+         * When the file is {@linkplain #commit() committed}, the hash is {@linkplain #setSha1(Path, String) cached}, so
+         * later calls to {@link #getSha1(Path)} don't need to read the file back from disk. The stream must be closed
+         * before committing, and the file should not be modified by any other means.
+         *
+         * @return The output stream. This replaces any existing contents of the scratch file.
+         * @throws IOException If the file could not be opened.
+         */
+        public OutputStream openDigesting() throws IOException {
+            if (sha1 != null) throw new IllegalStateException("Scratch file has already been opened");
+            var digest = sha1 = MoreDigests.createSha1();
+            return new BufferedOutputStream(new DigestOutputStream(Files.newOutputStream(path), digest), 1 << 16);
+        }
+
         /**
          * Commit the scratch file, overwriting the original.
          *
@@ -257,14 +367,19 @@ public final class MoreFiles {
          */
         public void commit() throws IOException {
             replace(path, destination);
+            if (sha1 != null) setSha1(destination, MoreDigests.toHexString(sha1));
         }
 
         @Override
         public void close() {
             tryDelete(path);
         }
-    }
 
+        @Override
+        public String toString() {
+            return "ScratchFile[path=" + path + ", destination=" + destination + "]";
+        }
+    }
 
     /**
      * Copy files from {@code from} to {@code to}. Much like {@link Files#copy(Path, OutputStream)}, but recurses into
@@ -0,0 +1,148 @@
+package cc.tweaked.vanillaextract.core.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * A {@link MessageDigest} implementation of the 128-bit x64 variant of
+ * <a href="https://github.com/aappleby/smhasher/wiki/MurmurHash3">MurmurHash3</a>, with a seed of 0.
+ * <p>
+ * This is not a cryptographic hash, and so should only be used for detecting changes to files we control, not for
+ * verifying downloads. However, it is several times faster than MD5 or SHA1.
+ *
+ * @see MoreDigests#createMurmur3()
+ */
+final class Murmur3Digest extends MessageDigest implements Cloneable {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final int BLOCK_SIZE = 16;
+
+    private long h1;
+    private long h2;
+    private long length;
+
+    /**
+     * Any bytes left over from the last update which did not fill an entire block.
+     */
+    private ByteBuffer tail = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    Murmur3Digest() {
+        super("Murmur3-128");
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return BLOCK_SIZE;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        length++;
+        tail.put(input);
+        if (!tail.hasRemaining()) flushTail();
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        engineUpdate(ByteBuffer.wrap(input, offset, len));
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        length += input.remaining();
+
+        // Fill up any existing partial block first.
+        if (tail.position() > 0) {
+            while (tail.hasRemaining() && input.hasRemaining()) tail.put(input.get());
+            if (tail.hasRemaining()) return;
+            flushTail();
+        }
+
+        // Then process as many whole blocks as we can, without changing the caller's byte order.
+        var blocks = input.remaining() / BLOCK_SIZE;
+        var view = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < blocks; i++) mixBlock(view.getLong(), view.getLong());
+        input.position(input.position() + blocks * BLOCK_SIZE);
+
+        tail.put(input);
+    }
+
+    private void flushTail() {
+        mixBlock(tail.getLong(0), tail.getLong(8));
+        tail.clear();
+    }
+
+    private void mixBlock(long k1, long k2) {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        var remaining = tail.position();
+        var bytes = tail.array();
+
+        long k1 = 0, k2 = 0;
+        for (int i = remaining - 1; i >= 8; i--) k2 ^= (bytes[i] & 0xFFL) << ((i - 8) * 8);
+        for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) k1 ^= (bytes[i] & 0xFFL) << (i * 8);
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        var result = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2).array();
+        engineReset();
+        return result;
+    }
+
+    @Override
+    protected void engineReset() {
+        h1 = h2 = length = 0;
+        tail.clear();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        var clone = (Murmur3Digest) super.clone();
+        clone.tail = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN).put(tail.array(), 0, tail.position());
+        return clone;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,236 @@
+package cc.tweaked.vanillaextract.core.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.*;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Builds a jar in memory, compressing each entry on a pool of worker threads. Entries copied from another zip are
+ * streamed directly to the output instead, and {@linkplain #addDeferred(String, Loader) deferred entries} are only
+ * loaded a few at a time as the jar is written.
+ * <p>
+ * Entries may be added from any thread, and in any order. They are written out in sorted order (along with any parent
+ * directories), with a {@linkplain #ENTRY_TIME fixed timestamp}, so the resulting jar is reproducible: it does not
+ * depend on the order entries were added or finished compressing, or when the jar was written. The manifest is always
+ * written first, as {@link java.util.jar.JarInputStream} requires.
+ * <p>
+ * This is similar to commons-compress's {@link org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator},
+ * but that writes entries in whatever order its threads happened to process them.
+ */
+public final class ParallelJarWriter implements Closeable {
+    /**
+     * The modification time of every entry we create. Using a fixed time keeps our jars reproducible.
+     */
+    public static final long ENTRY_TIME = 0;
+
+    private static final Comparator<String> ENTRY_ORDER = Comparator
+        .comparing((String name) -> !name.equals("META-INF/"))
+        .thenComparing(name -> !name.equals(JarFile.MANIFEST_NAME))
+        .thenComparing(Comparator.naturalOrder());
+
+    private final ExecutorService executor;
+    private final int threads;
+    private final ConcurrentMap<String, Future<? extends PendingEntry>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FutureTask<CompressedEntry>> deferred = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new jar writer.
+     *
+     * @param threads The number of threads to compress entries with.
+     */
+    public ParallelJarWriter(int threads) {
+        executor = Executors.newFixedThreadPool(threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Add a file to this jar, compressing it in the background.
+     *
+     * @param name     The name of the file.
+     * @param contents The file's contents.
+     */
+    public void add(String name, byte[] contents) {
+        var task = new FutureTask<>(() -> compress(name, contents));
+        if (entries.putIfAbsent(name, task) != null) throw new IllegalStateException("Duplicate zip entry " + name);
+        executor.execute(task);
+    }
+
+    /**
+     * Add a file to this jar, whose contents are only loaded when the jar is {@linkplain
+     * #writeTo(ZipArchiveOutputStream) written}.
+     * <p>
+     * While writing, deferred entries are loaded and compressed shortly before they are needed, and discarded once
+     * written. This means only a handful are held in memory at once, no matter how many are added.
+     *
+     * @param name   The name of the file.
+     * @param loader A function to load the file's contents. This may be called from any thread.
+     */
+    public void addDeferred(String name, Loader loader) {
+        var task = new FutureTask<>(() -> compress(name, loader.load()));
+        if (entries.putIfAbsent(name, task) != null) throw new IllegalStateException("Duplicate zip entry " + name);
+        deferred.put(name, task);
+    }
+
+    /**
+     * Copy an entry from another zip file, without decompressing it.
+     * <p>
+     * The entry is only read when this jar is {@linkplain #writeTo(ZipArchiveOutputStream) written}, and is streamed
+     * straight to the output, so large resources are never held in memory. The source zip must remain open until then.
+     *
+     * @param source The zip file to copy from.
+     * @param entry  The entry to copy.
+     */
+    public void addRaw(ZipFile source, ZipArchiveEntry entry) {
+        var raw = CompletableFuture.completedFuture(new RawEntry(source, entry));
+        if (entries.putIfAbsent(entry.getName(), raw) != null) {
+            throw new IllegalStateException("Duplicate zip entry " + entry.getName());
+        }
+    }
+
+    /**
+     * Wait for all entries to be compressed, and write them to a zip file.
+     *
+     * @param output The zip file to write to.
+     * @throws IOException If the zip file could not be written.
+     */
+    public void writeTo(ZipArchiveOutputStream output) throws IOException {
+        var names = new TreeSet<>(ENTRY_ORDER);
+        names.addAll(entries.keySet());
+        for (var name : entries.keySet()) {
+            for (int i = name.indexOf('/'); i >= 0 && i < name.length() - 1; i = name.indexOf('/', i + 1)) {
+                names.add(name.substring(0, i + 1));
+            }
+        }
+
+        // The number of entries to look ahead when loading deferred entries.
+        var window = threads * 2;
+        var upcoming = names.iterator();
+        for (int i = 0; i < window; i++) scheduleNext(upcoming);
+
+        for (var name : names) {
+            scheduleNext(upcoming);
+
+            var pending = entries.get(name);
+            if (pending == null) {
+                var entry = new ZipArchiveEntry(name);
+                entry.setTime(ENTRY_TIME);
+                entry.setMethod(ZipArchiveEntry.STORED);
+                entry.setSize(0);
+                entry.setCrc(0);
+                output.putArchiveEntry(entry);
+                output.closeArchiveEntry();
+                continue;
+            }
+
+            join(pending).writeTo(output);
+
+            // Drop deferred entries once written, so we don't keep them in memory.
+            if (deferred.remove(name) != null) entries.remove(name);
+        }
+    }
+
+    private void scheduleNext(Iterator<String> upcoming) {
+        if (!upcoming.hasNext()) return;
+        var task = deferred.get(upcoming.next());
+        if (task != null) executor.execute(task);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static PendingEntry join(Future<? extends PendingEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            throw new IllegalStateException("Failed to compress entry", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing jar");
+        }
+    }
+
+    private static CompressedEntry compress(String name, byte[] contents) {
+        var crc = new CRC32();
+        crc.update(contents);
+
+        var entry = new ZipArchiveEntry(name);
+        entry.setTime(ENTRY_TIME);
+        entry.setSize(contents.length);
+        entry.setCrc(crc.getValue());
+
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        var compressed = new ByteArrayOutputStream(contents.length / 2 + 64);
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+
+            var buffer = new byte[8192];
+            while (!deflater.finished()) compressed.write(buffer, 0, deflater.deflate(buffer));
+        } finally {
+            deflater.end();
+        }
+
+        // Small files may end up larger when compressed. Just store those as-is.
+        if (compressed.size() >= contents.length) return stored(entry, contents);
+
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        entry.setCompressedSize(compressed.size());
+        return new CompressedEntry(entry, compressed.toByteArray());
+    }
+
+    private static CompressedEntry stored(ZipArchiveEntry entry, byte[] contents) {
+        entry.setMethod(ZipArchiveEntry.STORED);
+        entry.setCompressedSize(contents.length);
+        return new CompressedEntry(entry, contents);
+    }
+
+    /**
+     * Loads the contents of a {@linkplain #addDeferred(String, Loader) deferred entry}.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * Load the entry's contents.
+         *
+         * @return The entry's contents.
+         * @throws IOException If the contents could not be loaded.
+         */
+        byte[] load() throws IOException;
+    }
+
+    private sealed interface PendingEntry {
+        void writeTo(ZipArchiveOutputStream output) throws IOException;
+    }
+
+    private record CompressedEntry(ZipArchiveEntry entry, byte[] contents) implements PendingEntry {
+        @Override
+        public void writeTo(ZipArchiveOutputStream output) throws IOException {
+            output.addRawArchiveEntry(entry, new ByteArrayInputStream(contents));
+        }
+    }
+
+    private record RawEntry(ZipFile source, ZipArchiveEntry entry) implements PendingEntry {
+        @Override
+        public void writeTo(ZipArchiveOutputStream output) throws IOException {
+            try (var stream = source.getRawInputStream(entry)) {
+                output.addRawArchiveEntry(entry, stream);
+            }
+        }
+    }
+}
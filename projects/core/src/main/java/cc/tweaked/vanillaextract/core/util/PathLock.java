@@ -0,0 +1,105 @@
+package cc.tweaked.vanillaextract.core.util;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exclusive lock on a file path, shared across both threads and processes.
+ * <p>
+ * Several Gradle daemons (or parallel CI jobs) may share the same global cache. This lock is used to ensure only one of
+ * them generates a given file, while the others wait for it to finish, and then reuse the result. Callers should check
+ * whether the file exists (or is up-to-date) both before and after acquiring the lock:
+ *
+ * <pre>{@code
+ * if (!MoreFiles.exists(path)) {
+ *     try (var lock = PathLock.acquire(path)) {
+ *         if (!MoreFiles.exists(path)) generate(path);
+ *     }
+ * }
+ * }</pre>
+ * <p>
+ * The lock is held on a {@code .lock} file next to the path. This file is left behind after the lock is released.
+ */
+public final class PathLock implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(PathLock.class);
+
+    /**
+     * Locks within this process. {@link FileLock}s are held on behalf of the whole JVM, so we need a separate lock to
+     * coordinate between threads.
+     */
+    private static final ConcurrentMap<Path, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+
+    private final ReentrantLock localLock;
+    private final @Nullable FileChannel channel;
+
+    private PathLock(ReentrantLock localLock, @Nullable FileChannel channel) {
+        this.localLock = localLock;
+        this.channel = channel;
+    }
+
+    /**
+     * Acquire a lock on a path, blocking until it is available.
+     *
+     * @param path The path to lock.
+     * @return The acquired lock. This should be {@linkplain #close() closed} once finished with.
+     * @throws IOException If the lock file could not be opened, or we were interrupted while waiting.
+     */
+    public static PathLock acquire(Path path) throws IOException {
+        var localLock = localLocks.computeIfAbsent(path.toAbsolutePath().normalize(), x -> new ReentrantLock());
+        try {
+            localLock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for lock on " + path);
+        }
+
+        // If this thread already holds the lock, the file is already locked too.
+        if (localLock.getHoldCount() > 1) return new PathLock(localLock, null);
+
+        FileChannel channel = null;
+        try {
+            var lockPath = path.resolveSibling(path.getFileName() + ".lock");
+            MoreFiles.createParentDirectories(lockPath);
+            channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+            if (channel.tryLock() == null) {
+                LOG.info("Waiting for another process to finish with {}.", path);
+                channel.lock();
+            }
+
+            return new PathLock(localLock, channel);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException inner) {
+                    e.addSuppressed(inner);
+                }
+            }
+            localLock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // Closing the channel also releases the file lock.
+            if (channel != null) channel.close();
+        } finally {
+            localLock.unlock();
+        }
+    }
+}
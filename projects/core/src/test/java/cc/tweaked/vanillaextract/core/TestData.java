@@ -78,6 +78,6 @@ public final class TestData {
     public static MinecraftProvider.SplitArtifacts setupMinecraft(Path dir, FileDownloader downloader) throws IOException {
         var provider = new MinecraftProvider(downloader);
         var rawArtifacts = provider.provideRaw(dir, MC_1_20_4, MC_1_20_4_CLIENT_LIBRARIES);
-        return provider.provideSplit(dir, rawArtifacts, false);
+        return provider.provideSplit(dir, rawArtifacts, null, false);
     }
 }
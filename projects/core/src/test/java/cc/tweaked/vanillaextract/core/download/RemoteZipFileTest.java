@@ -0,0 +1,113 @@
+package cc.tweaked.vanillaextract.core.download;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RemoteZipFileTest {
+    private static final byte[] STORED = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DEFLATED = new byte[256 * 1024];
+
+    static {
+        // Use random data, so the entry is larger than the end of the zip we read when opening it.
+        new Random(0).nextBytes(DEFLATED);
+    }
+
+    @Test
+    public void testReadsEntries() throws IOException {
+        var remote = new ByteArrayRemoteFile(createZip("Some comment"));
+        var zip = RemoteZipFile.open(remote);
+
+        assertArrayEquals(STORED, readEntry(zip, "stored.txt"));
+        assertArrayEquals(DEFLATED, readEntry(zip, "dir/deflated.txt"));
+        assertNull(zip.getEntry("missing.txt"));
+    }
+
+    @Test
+    public void testOnlyReadsNeededRanges() throws IOException {
+        var contents = createZip(null);
+        var remote = new ByteArrayRemoteFile(contents);
+        var zip = RemoteZipFile.open(remote);
+        readEntry(zip, "stored.txt");
+
+        var read = remote.reads.stream().mapToLong(x -> x).sum();
+        assertTrue(read < contents.length / 2, "Read " + read + " of " + contents.length + " bytes");
+    }
+
+    @Test
+    public void testRejectsNonZip() {
+        var remote = new ByteArrayRemoteFile(new byte[1024]);
+        assertThrows(ZipException.class, () -> RemoteZipFile.open(remote));
+    }
+
+    private static byte[] readEntry(RemoteZipFile zip, String name) throws IOException {
+        var entry = zip.getEntry(name);
+        assertNotNull(entry, "Missing " + name);
+        try (var stream = zip.getInputStream(entry)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    private static byte[] createZip(@Nullable String comment) throws IOException {
+        var output = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(output)) {
+            var stored = new ZipEntry("stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED.length);
+            var crc = new CRC32();
+            crc.update(STORED);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(STORED);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("dir/deflated.txt"));
+            zip.write(DEFLATED);
+            zip.closeEntry();
+
+            if (comment != null) zip.setComment(comment);
+        }
+        return output.toByteArray();
+    }
+
+    private static final class ByteArrayRemoteFile implements RemoteFile {
+        private final byte[] contents;
+        final List<Long> reads = new ArrayList<>();
+
+        private ByteArrayRemoteFile(byte[] contents) {
+            this.contents = contents;
+        }
+
+        @Override
+        public URI uri() {
+            return URI.create("https://example.com/file.zip");
+        }
+
+        @Override
+        public long size() {
+            return contents.length;
+        }
+
+        @Override
+        public InputStream read(long offset, long length) {
+            assertTrue(offset >= 0 && offset + length <= contents.length, "Range is out of bounds");
+            reads.add(length);
+            return new ByteArrayInputStream(contents, (int) offset, (int) length);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cc.tweaked.vanillaextract.core.inputs;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+public class ConcurrentInputCollectorTest {
+    /**
+     * Fingerprint a file, taking longer for files earlier in the alphabet. This means fingerprints finish in the
+     * opposite order to which they were started.
+     */
+    private static FileFingerprint slowFingerprint(Path path) {
+        try {
+            Thread.sleep(('z' - path.toString().charAt(0)) * 5L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new FileFingerprint(path, "digest-" + path);
+    }
+
+    @Test
+    public void inputs_are_added_in_order() throws IOException {
+        var expected = new HashingInputCollector("Expected");
+        expected.addInputDigest("first");
+        for (var name : new String[]{ "a", "m", "x" }) expected.addInput(slowFingerprint(Path.of(name)));
+        expected.addInputDigest("last");
+
+        var actual = new HashingInputCollector("Actual");
+        try (var executor = Executors.newFixedThreadPool(3)) {
+            var concurrent = new ConcurrentInputCollector(executor);
+            concurrent.addInputDigest("first");
+            for (var name : new String[]{ "a", "m", "x" }) {
+                concurrent.addInput(Path.of(name), ConcurrentInputCollectorTest::slowFingerprint);
+            }
+            concurrent.addInputDigest("last");
+            concurrent.addTo(actual);
+        }
+
+        assertEquals(expected.getDigest(), actual.getDigest());
+    }
+
+    @Test
+    public void errors_are_propagated() {
+        try (var executor = Executors.newFixedThreadPool(1)) {
+            var concurrent = new ConcurrentInputCollector(executor);
+            concurrent.addInput(Path.of("missing"), path -> {
+                throw new IOException("Cannot read " + path);
+            });
+
+            var error = assertThrows(IOException.class, () -> concurrent.addTo(new HashingInputCollector("Test")));
+            assertEquals("Cannot read missing", error.getMessage());
+        }
+    }
+}
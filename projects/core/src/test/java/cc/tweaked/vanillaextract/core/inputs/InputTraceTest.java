@@ -0,0 +1,69 @@
+package cc.tweaked.vanillaextract.core.inputs;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+public class InputTraceTest {
+    @TempDir
+    private Path dir;
+
+    private static InputTrace trace(String accessWidener) {
+        var inputs = new HashingInputCollector("Minecraft");
+        inputs.addInput(new FileFingerprint(Path.of("common.jar"), "1234"));
+        inputs.addInput(new FileFingerprint(Path.of("example.accesswidener"), accessWidener));
+        return inputs.getTrace();
+    }
+
+    @Test
+    public void diff_reports_changed_inputs() {
+        assertEquals(List.of(), trace("abcd").diff(trace("abcd")));
+        assertEquals(
+            List.of("Minecraft > example.accesswidener: [abcd] -> [efgh]"),
+            trace("efgh").diff(trace("abcd"))
+        );
+    }
+
+    @Test
+    public void diff_matches_inputs_by_name() {
+        var before = new HashingInputCollector("Minecraft");
+        before.addInput(new FileFingerprint(Path.of("a.accesswidener"), "1111"));
+        before.addInput(new FileFingerprint(Path.of("b.accesswidener"), "2222"));
+        before.addInput(new FileFingerprint(Path.of("d.accesswidener"), "4444"));
+
+        var after = new HashingInputCollector("Minecraft");
+        after.addInput(new FileFingerprint(Path.of("a.accesswidener"), "1111"));
+        after.addInput(new FileFingerprint(Path.of("c.accesswidener"), "3333"));
+        after.addInput(new FileFingerprint(Path.of("d.accesswidener"), "4444"));
+
+        assertEquals(
+            List.of("Minecraft > c.accesswidener: added", "Minecraft > b.accesswidener: removed"),
+            after.getTrace().diff(before.getTrace())
+        );
+    }
+
+    @Test
+    public void record_keeps_previous_trace() {
+        var latest = dir.resolve("minecraft.trace.json");
+        var previous = InputTrace.getPreviousLocation(latest);
+
+        InputTrace.record(latest, trace("abcd"));
+        assertEquals(trace("abcd"), InputTrace.read(latest));
+        assertNull(InputTrace.read(previous));
+
+        // Recording the same trace leaves the previous one alone.
+        InputTrace.record(latest, trace("abcd"));
+        assertNull(InputTrace.read(previous));
+
+        InputTrace.record(latest, trace("efgh"));
+        assertEquals(trace("efgh"), InputTrace.read(latest));
+        assertEquals(trace("abcd"), InputTrace.read(previous));
+    }
+}
@@ -0,0 +1,76 @@
+package cc.tweaked.vanillaextract.core.minecraft;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassRemapCacheTest {
+    private static final String KEY = "0123456789abcdef";
+    private static final String OTHER_KEY = "fedcba9876543210";
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        try (var cache = new ClassRemapCache(dir, false)) {
+            assertFalse(cache.has(KEY));
+
+            cache.put(KEY, new ClassRemapCache.Entry("net/minecraft/Example", new byte[]{ 1, 2, 3 }));
+            cache.flush();
+
+            assertTrue(cache.has(KEY));
+            var entry = cache.get(KEY);
+            assertNotNull(entry);
+            assertEquals("net/minecraft/Example", entry.name());
+            assertArrayEquals(new byte[]{ 1, 2, 3 }, entry.contents());
+        }
+
+        // Refreshing should ignore the existing class.
+        try (var cache = new ClassRemapCache(dir, true)) {
+            assertFalse(cache.has(KEY));
+        }
+    }
+
+    @Test
+    public void testWriteFailure() throws IOException {
+        // Use a file as the cache directory, so no classes can be written.
+        var root = dir.resolve("cache");
+        Files.writeString(root, "");
+
+        try (var cache = new ClassRemapCache(root, false)) {
+            cache.put(KEY, new ClassRemapCache.Entry("net/minecraft/Example", new byte[]{ 1, 2, 3 }));
+            assertThrows(IOException.class, cache::flush);
+
+            // The error should only be reported once.
+            cache.flush();
+        }
+    }
+
+    @Test
+    public void testEvict() throws IOException {
+        try (var cache = new ClassRemapCache(dir, false)) {
+            cache.put(KEY, new ClassRemapCache.Entry("Old", new byte[0]));
+            cache.put(OTHER_KEY, new ClassRemapCache.Entry("New", new byte[0]));
+            cache.flush();
+
+            // Pretend the first class was last used a long time ago.
+            try (var files = Files.walk(dir)) {
+                for (var file : files.filter(x -> x.getFileName().toString().startsWith(KEY.substring(2))).toList()) {
+                    Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(ClassRemapCache.MAX_AGE).minusSeconds(60)));
+                }
+            }
+
+            cache.evict();
+            assertNull(cache.get(KEY));
+            assertNotNull(cache.get(OTHER_KEY));
+        }
+    }
+}
@@ -26,10 +26,10 @@ public class MinecraftProviderTest {
         new MinecraftProvider(downloader).provideRaw(dir, TestData.MC_1_20_4, TestData.MC_1_20_4_CLIENT_LIBRARIES);
 
         assertIterableEquals(List.of(
-            new FileDownload(uri("https://piston-data.mojang.com/v1/objects/fd19469fed4a4b4c15b2d5133985f0e3e7816a8a/client.jar"), dir.resolve("client-fd19469fed4a4b4c15b2d5133985f0e3e7816a8a.jar"), "fd19469fed4a4b4c15b2d5133985f0e3e7816a8a", false),
-            new FileDownload(uri("https://piston-data.mojang.com/v1/objects/be76ecc174ea25580bdc9bf335481a5192d9f3b7/client.txt"), dir.resolve("client-be76ecc174ea25580bdc9bf335481a5192d9f3b7.txt"), "be76ecc174ea25580bdc9bf335481a5192d9f3b7", false),
-            new FileDownload(uri("https://piston-data.mojang.com/v1/objects/8dd1a28015f51b1803213892b50b7b4fc76e594d/server.jar"), dir.resolve("server-8dd1a28015f51b1803213892b50b7b4fc76e594d.jar"), "8dd1a28015f51b1803213892b50b7b4fc76e594d", false),
-            new FileDownload(uri("https://piston-data.mojang.com/v1/objects/c1cafe916dd8b58ed1fe0564fc8f786885224e62/server.txt"), dir.resolve("server-c1cafe916dd8b58ed1fe0564fc8f786885224e62.txt"), "c1cafe916dd8b58ed1fe0564fc8f786885224e62", false)
+            new FileDownload(uri("https://piston-data.mojang.com/v1/objects/fd19469fed4a4b4c15b2d5133985f0e3e7816a8a/client.jar"), dir.resolve("client-fd19469fed4a4b4c15b2d5133985f0e3e7816a8a.jar"), "fd19469fed4a4b4c15b2d5133985f0e3e7816a8a", 24445539, false),
+            new FileDownload(uri("https://piston-data.mojang.com/v1/objects/be76ecc174ea25580bdc9bf335481a5192d9f3b7/client.txt"), dir.resolve("client-be76ecc174ea25580bdc9bf335481a5192d9f3b7.txt"), "be76ecc174ea25580bdc9bf335481a5192d9f3b7", 8897012, false),
+            new FileDownload(uri("https://piston-data.mojang.com/v1/objects/8dd1a28015f51b1803213892b50b7b4fc76e594d/server.jar"), dir.resolve("server-8dd1a28015f51b1803213892b50b7b4fc76e594d.jar"), "8dd1a28015f51b1803213892b50b7b4fc76e594d", 49150256, false),
+            new FileDownload(uri("https://piston-data.mojang.com/v1/objects/c1cafe916dd8b58ed1fe0564fc8f786885224e62/server.txt"), dir.resolve("server-c1cafe916dd8b58ed1fe0564fc8f786885224e62.txt"), "c1cafe916dd8b58ed1fe0564fc8f786885224e62", 6797462, false)
         ), downloader.takeDownloads());
     }
 
@@ -115,7 +115,7 @@ public class MinecraftProviderTest {
     public void testSplitFingerprints() throws IOException {
         var provider = new MinecraftProvider(MirrorDownloader.createOffline());
         var rawArtifacts = provider.provideRaw(dir, TestData.MC_1_20_4, TestData.MC_1_20_4_CLIENT_LIBRARIES);
-        var splitArtifacts = provider.provideSplit(dir, rawArtifacts, false);
+        var splitArtifacts = provider.provideSplit(dir, rawArtifacts, null, false);
 
         // Check the conversion is deterministic
         assertEquals("f9720e74c211a561fdcf6ca97862ff41d195d737", splitArtifacts.client().jar().digest());
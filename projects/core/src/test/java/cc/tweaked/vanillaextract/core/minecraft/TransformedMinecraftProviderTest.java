@@ -6,14 +6,19 @@ import cc.tweaked.vanillaextract.core.mappings.MappingProvider;
 import cc.tweaked.vanillaextract.core.mappings.MappingsFileProvider;
 import cc.tweaked.vanillaextract.core.mappings.MojangMappings;
 import cc.tweaked.vanillaextract.core.support.MirrorDownloader;
+import cc.tweaked.vanillaextract.core.util.MoreFiles;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.zip.ZipFile;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TransformedMinecraftProviderTest {
     @TempDir
@@ -25,13 +30,116 @@ public class TransformedMinecraftProviderTest {
         var minecraft = TestData.setupMinecraft(dir, MirrorDownloader.createOffline());
 
         var mappings = MojangMappings.get().resolve(new MappingProvider.Context(minecraft.mappings(), FileFingerprint::createDefault));
-        var mappingsFile = new MappingsFileProvider(dir).saveMappings("1.20.4", mappings);
+        var mappingsFile = new MappingsFileProvider(dir).saveMappings("1.20.4", mappings, null);
 
-        var transformed = new TransformedMinecraftProvider(dir).provide("1.20.4", minecraft, mappingsFile, List.of(), false);
+        var transformed = new TransformedMinecraftProvider(dir, dir).provide("1.20.4", minecraft, mappingsFile, List.of(), TransformedMinecraftProvider.Options.defaults(), null, false, false);
         assertEquals(
             dir.resolve("net/minecraft/minecraft-common/1.20.4-ee691eab37317d70/minecraft-common-1.20.4-ee691eab37317d70.jar"),
             transformed.common().path()
         );
+        assertEquals(
+            dir.resolve("net/minecraft/minecraft-common/1.20.4-ee691eab37317d70/minecraft-common-1.20.4-ee691eab37317d70-resources.jar"),
+            transformed.common().resources()
+        );
+
+        // The main jar should only contain classes, and the resources jar everything else.
+        for (var jar : List.of(transformed.common(), transformed.clientOnly())) {
+            try (var classes = new ZipFile(jar.path().toFile()); var resources = new ZipFile(jar.resources().toFile())) {
+                assertTrue(classes.stream().filter(x -> !x.isDirectory()).allMatch(x -> x.getName().endsWith(".class")));
+                assertTrue(resources.stream().noneMatch(x -> x.getName().endsWith(".class")));
+                assertNotNull(resources.getEntry("META-INF/MANIFEST.MF"));
+            }
+        }
+    }
+
+    @Test
+    public void transformIsReproducible() throws IOException {
+        var minecraft = TestData.setupMinecraft(dir, MirrorDownloader.createOffline());
+
+        var mappings = MojangMappings.get().resolve(new MappingProvider.Context(minecraft.mappings(), FileFingerprint::createDefault));
+        var mappingsFile = new MappingsFileProvider(dir).saveMappings("1.20.4", mappings, null);
+
+        // Use a different thread count for each build, so entries finish in a different order. The second build is
+        // also remapped in batches, which should not affect the output.
+        var first = new TransformedMinecraftProvider(dir.resolve("first"), dir.resolve("first"))
+            .provide("1.20.4", minecraft, mappingsFile, List.of(), new TransformedMinecraftProvider.Options(1, 1, Long.MAX_VALUE), null, false, false);
+        var second = new TransformedMinecraftProvider(dir.resolve("second"), dir.resolve("second"))
+            .provide("1.20.4", minecraft, mappingsFile, List.of(), new TransformedMinecraftProvider.Options(4, 4, 8 << 20), null, false, false);
+
+        assertEquals(-1, Files.mismatch(first.common().path(), second.common().path()));
+        assertEquals(-1, Files.mismatch(first.common().resources(), second.common().resources()));
+        assertEquals(-1, Files.mismatch(first.clientOnly().path(), second.clientOnly().path()));
+        assertEquals(-1, Files.mismatch(first.clientOnly().resources(), second.clientOnly().resources()));
+    }
+
+    @Test
+    public void transformFromClassCache() throws IOException {
+        var minecraft = TestData.setupMinecraft(dir, MirrorDownloader.createOffline());
+
+        var mappings = MojangMappings.get().resolve(new MappingProvider.Context(minecraft.mappings(), FileFingerprint::createDefault));
+        var mappingsFile = new MappingsFileProvider(dir).saveMappings("1.20.4", mappings, null);
+
+        var cache = dir.resolve("cache");
+        var first = new TransformedMinecraftProvider(cache, dir.resolve("first"))
+            .provide("1.20.4", minecraft, mappingsFile, List.of(), TransformedMinecraftProvider.Options.defaults(), null, false, false);
+
+        // Delete the remapped jars, so the second build must be assembled from the class cache.
+        MoreFiles.deleteRecursively(cache.resolve("1.20.4"));
+        assertTrue(Files.isDirectory(cache.resolve("remapped-classes")));
+
+        var second = new TransformedMinecraftProvider(cache, dir.resolve("second"))
+            .provide("1.20.4", minecraft, mappingsFile, List.of(), TransformedMinecraftProvider.Options.defaults(), null, false, false);
+
+        assertEquals(-1, Files.mismatch(first.common().path(), second.common().path()));
+        assertEquals(-1, Files.mismatch(first.clientOnly().path(), second.clientOnly().path()));
+    }
+
+    @Test
+    public void transformRefreshIgnoresClassCache() throws IOException {
+        var minecraft = TestData.setupMinecraft(dir, MirrorDownloader.createOffline());
+
+        var mappings = MojangMappings.get().resolve(new MappingProvider.Context(minecraft.mappings(), FileFingerprint::createDefault));
+        var mappingsFile = new MappingsFileProvider(dir).saveMappings("1.20.4", mappings, null);
+
+        var cache = dir.resolve("cache");
+        var first = new TransformedMinecraftProvider(cache, dir.resolve("first"))
+            .provide("1.20.4", minecraft, mappingsFile, List.of(), TransformedMinecraftProvider.Options.defaults(), null, false, false);
+
+        // Corrupt every cached class. Refreshing should remap them all again, rather than reading from the cache.
+        try (var files = Files.walk(cache.resolve("remapped-classes"))) {
+            for (var file : files.filter(Files::isRegularFile).toList()) Files.write(file, new byte[0]);
+        }
+
+        var second = new TransformedMinecraftProvider(cache, dir.resolve("second"))
+            .provide("1.20.4", minecraft, mappingsFile, List.of(), TransformedMinecraftProvider.Options.defaults(), null, true, true);
+
+        assertEquals(-1, Files.mismatch(first.common().path(), second.common().path()));
+        assertEquals(-1, Files.mismatch(first.clientOnly().path(), second.clientOnly().path()));
+    }
+
+    @Test
+    public void transformRewriteReusesRemappedJars() throws IOException {
+        var minecraft = TestData.setupMinecraft(dir, MirrorDownloader.createOffline());
+
+        var mappings = MojangMappings.get().resolve(new MappingProvider.Context(minecraft.mappings(), FileFingerprint::createDefault));
+        var mappingsFile = new MappingsFileProvider(dir).saveMappings("1.20.4", mappings, null);
+
+        var cache = dir.resolve("cache");
+        var first = new TransformedMinecraftProvider(cache, dir.resolve("first"))
+            .provide("1.20.4", minecraft, mappingsFile, List.of(), TransformedMinecraftProvider.Options.defaults(), null, false, false);
+
+        // Corrupt every cached class. Rewriting the jars should reuse the remapped jars, and so never read them.
+        try (var files = Files.walk(cache.resolve("remapped-classes"))) {
+            for (var file : files.filter(Files::isRegularFile).toList()) Files.write(file, new byte[0]);
+        }
+
+        var second = new TransformedMinecraftProvider(cache, dir.resolve("first"))
+            .provide("1.20.4", minecraft, mappingsFile, List.of(), TransformedMinecraftProvider.Options.defaults(), null, true, false);
+
+        assertEquals(first, second);
+        try (var files = Files.walk(cache.resolve("remapped-classes"))) {
+            assertTrue(files.filter(Files::isRegularFile).allMatch(x -> x.toFile().length() == 0));
+        }
     }
 
     /*@Test
@@ -59,7 +59,7 @@ public class MirrorDownloader implements FileDownloader {
             if (fallback == null) {
                 LOG.info("Skipping download of {} ({} does not exist)", download.uri(), path);
             } else {
-                fallback.download(new FileDownload(download.uri(), path, download.sha1(), download.force()));
+                fallback.download(new FileDownload(download.uri(), path, download.sha1(), download.size(), download.force()));
             }
         }
 
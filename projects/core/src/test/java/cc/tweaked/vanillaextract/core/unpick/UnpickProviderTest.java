@@ -33,7 +33,7 @@ public class UnpickProviderTest {
             List.of(minecraft.client().mappings(), minecraft.server().mappings()),
             FileFingerprint::createDefault
         ));
-        return new MappingsFileProvider(dir).saveMappings("1.20.4", mappings).path();
+        return new MappingsFileProvider(dir).saveMappings("1.20.4", mappings, null).path();
     }
 
     @Test
@@ -67,11 +67,14 @@ public class UnpickProviderTest {
 
         var minecraft = TestData.setupMinecraft(dir, downloader);
         var mappings = MojangMappings.get().resolve(new MappingProvider.Context(minecraft.mappings(), FileFingerprint::createDefault));
-        var mappingsFile = new MappingsFileProvider(dir).saveMappings("1.20.4", mappings);
-        var transformed = new TransformedMinecraftProvider(dir).provide("1.20.4", minecraft, mappingsFile, List.of(), false);
+        var mappingsFile = new MappingsFileProvider(dir).saveMappings("1.20.4", mappings, null);
+        var transformed = new TransformedMinecraftProvider(dir, dir).provide("1.20.4", minecraft, mappingsFile, List.of(), TransformedMinecraftProvider.Options.defaults(), null, false, false);
 
         try (var unpick = new UnpickProvider(getMappings(downloader, TestData.MC_1_20_4), unpickJar, List.of(transformed.common().path()))) {
             unpick.unpick(transformed.common().path(), dir.resolve("unpicked.jar"));
+            unpick.unpick(transformed.common().path(), dir.resolve("unpicked-again.jar"));
         }
+
+        assertEquals(-1, Files.mismatch(dir.resolve("unpicked.jar"), dir.resolve("unpicked-again.jar")));
     }
 }
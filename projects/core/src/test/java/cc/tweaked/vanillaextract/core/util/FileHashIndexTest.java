@@ -0,0 +1,52 @@
+package cc.tweaked.vanillaextract.core.util;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+public class FileHashIndexTest {
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void get_returns_stored_hash() throws IOException {
+        var file = dir.resolve("file.txt");
+        Files.writeString(file, "Hello");
+
+        assertNull(FileHashIndex.get(file, "sha1"));
+        assertTrue(FileHashIndex.put(file, "sha1", "abc"));
+        assertEquals("abc", FileHashIndex.get(file, "sha1"));
+        assertNull(FileHashIndex.get(file, "sha256"));
+        assertTrue(MoreFiles.exists(dir.resolve(FileHashIndex.INDEX_NAME)));
+    }
+
+    @Test
+    public void get_ignores_modified_files() throws IOException {
+        var file = dir.resolve("file.txt");
+        Files.writeString(file, "Hello");
+        assertTrue(FileHashIndex.put(file, "sha1", "abc"));
+
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+        assertNull(FileHashIndex.get(file, "sha1"));
+    }
+
+    @Test
+    public void get_ignores_replaced_files() throws IOException {
+        var file = dir.resolve("file.txt");
+        Files.writeString(file, "Hello");
+        assertTrue(FileHashIndex.put(file, "sha1", "abc"));
+
+        Files.writeString(file, "Goodbye");
+        assertNull(FileHashIndex.get(file, "sha1"));
+    }
+}
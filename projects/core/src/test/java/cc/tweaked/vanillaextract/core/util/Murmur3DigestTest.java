@@ -0,0 +1,48 @@
+package cc.tweaked.vanillaextract.core.util;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+public class Murmur3DigestTest {
+    private static final byte[] FOX = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+    private static final String FOX_HASH = "6c1b07bc7bbc4be347939ac4a93c437a";
+
+    @Test
+    public void digest_matches_reference_implementation() {
+        var digest = MoreDigests.createMurmur3();
+        assertEquals("00000000000000000000000000000000", MoreDigests.toHexString(digest.digest(new byte[0])));
+        assertEquals(FOX_HASH, MoreDigests.toHexString(digest.digest(FOX)));
+    }
+
+    @Test
+    public void digest_is_independent_of_chunking() {
+        var digest = MoreDigests.createMurmur3();
+        for (var b : FOX) digest.update(b);
+        assertEquals(FOX_HASH, MoreDigests.toHexString(digest));
+
+        digest.update(FOX, 0, 5);
+        digest.update(ByteBuffer.allocateDirect(FOX.length - 5).put(FOX, 5, FOX.length - 5).flip());
+        assertEquals(FOX_HASH, MoreDigests.toHexString(digest));
+    }
+
+    @Test
+    public void clone_copies_partial_state() throws CloneNotSupportedException {
+        var digest = MoreDigests.createMurmur3();
+        digest.update(FOX, 0, 5);
+
+        var clone = (MessageDigest) digest.clone();
+        digest.update(FOX, 5, FOX.length - 5);
+        clone.update(FOX, 5, FOX.length - 5);
+
+        assertEquals(FOX_HASH, MoreDigests.toHexString(digest));
+        assertEquals(FOX_HASH, MoreDigests.toHexString(clone));
+    }
+}
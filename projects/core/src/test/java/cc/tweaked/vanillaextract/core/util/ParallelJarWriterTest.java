@@ -0,0 +1,110 @@
+package cc.tweaked.vanillaextract.core.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+public class ParallelJarWriterTest {
+    @TempDir
+    private Path dir;
+
+    private static List<String> getNames() {
+        List<String> names = new ArrayList<>();
+        names.add("META-INF/MANIFEST.MF");
+        for (int i = 0; i < 200; i++) names.add("a/b" + (i % 7) + "/C" + i + ".class");
+        return names;
+    }
+
+    private void write(Path path, List<String> names, int threads) throws IOException {
+        try (var writer = new ParallelJarWriter(threads); var output = new ZipArchiveOutputStream(path)) {
+            for (var name : names) {
+                var contents = name.endsWith(".MF") ? "Manifest-Version: 1.0\r\n\r\n" : name.repeat(10);
+                writer.add(name, contents.getBytes(StandardCharsets.UTF_8));
+            }
+            writer.writeTo(output);
+        }
+    }
+
+    @Test
+    public void output_is_independent_of_insertion_order() throws IOException {
+        var names = getNames();
+        write(dir.resolve("first.jar"), names, 1);
+
+        Collections.shuffle(names, new Random(0));
+        write(dir.resolve("second.jar"), names, 4);
+
+        assertEquals(-1, Files.mismatch(dir.resolve("first.jar"), dir.resolve("second.jar")));
+    }
+
+    @Test
+    public void manifest_is_written_first() throws IOException {
+        var jar = dir.resolve("out.jar");
+        write(jar, getNames(), 2);
+
+        try (var input = new JarInputStream(Files.newInputStream(jar))) {
+            assertNotNull(input.getManifest());
+            assertEquals("a/", input.getNextJarEntry().getName());
+        }
+    }
+
+    @Test
+    public void deferred_entries_are_loaded_when_written() throws IOException {
+        var names = getNames();
+        write(dir.resolve("eager.jar"), names, 2);
+
+        var loaded = new AtomicInteger();
+        var deferred = dir.resolve("deferred.jar");
+        try (var writer = new ParallelJarWriter(2); var output = new ZipArchiveOutputStream(deferred)) {
+            for (var name : names) {
+                var contents = name.endsWith(".MF") ? "Manifest-Version: 1.0\r\n\r\n" : name.repeat(10);
+                writer.addDeferred(name, () -> {
+                    loaded.incrementAndGet();
+                    return contents.getBytes(StandardCharsets.UTF_8);
+                });
+            }
+
+            assertEquals(0, loaded.get());
+            writer.writeTo(output);
+        }
+
+        assertEquals(names.size(), loaded.get());
+        assertEquals(-1, Files.mismatch(dir.resolve("eager.jar"), deferred));
+    }
+
+    @Test
+    public void raw_entries_are_copied_as_is() throws IOException {
+        var source = dir.resolve("source.jar");
+        write(source, getNames(), 2);
+
+        var copy = dir.resolve("copy.jar");
+        try (var zip = ZipFile.builder().setPath(source).get();
+             var writer = new ParallelJarWriter(1);
+             var output = new ZipArchiveOutputStream(copy)) {
+            var entries = zip.getEntries();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                if (!entry.isDirectory()) writer.addRaw(zip, entry);
+            }
+            writer.writeTo(output);
+        }
+
+        assertEquals(-1, Files.mismatch(source, copy));
+    }
+}
@@ -0,0 +1,53 @@
+package cc.tweaked.vanillaextract.core.util;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+public class PathLockTest {
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void acquire_is_reentrant() throws Exception {
+        var path = dir.resolve("file.txt");
+        try (var lock = PathLock.acquire(path)) {
+            try (var inner = PathLock.acquire(path)) {
+                assertTrue(MoreFiles.exists(dir.resolve("file.txt.lock")));
+            }
+        }
+
+        // And that the lock is released afterwards.
+        CompletableFuture.runAsync(() -> acquireAndRelease(path)).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void acquire_blocks_other_threads() throws Exception {
+        var path = dir.resolve("file.txt");
+
+        CompletableFuture<Void> other;
+        try (var lock = PathLock.acquire(path)) {
+            other = CompletableFuture.runAsync(() -> acquireAndRelease(path));
+            assertThrows(TimeoutException.class, () -> other.get(200, TimeUnit.MILLISECONDS));
+        }
+
+        other.get(5, TimeUnit.SECONDS);
+    }
+
+    private static void acquireAndRelease(Path path) {
+        try (var lock = PathLock.acquire(path)) {
+            // Nothing to do.
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package cc.tweaked.vanillaextract;
+
+import cc.tweaked.vanillaextract.core.inputs.InputTrace;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.ServiceReference;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
+
+/**
+ * Explain why Minecraft was last rebuilt.
+ * <p>
+ * Whenever a cached artifact (the split jars, mappings and transformed jars) is rebuilt for this project, we record a
+ * trace of its inputs. This compares the latest trace against the previous one, and reports which inputs changed.
+ *
+ * @see InputTrace
+ */
+@UntrackedTask(because = "Reads the state of the Minecraft cache")
+public abstract class ExplainCacheTask extends DefaultTask {
+    /**
+     * The path of the project whose traces should be explained.
+     */
+    @Input
+    public abstract Property<String> getProjectPath();
+
+    @ServiceReference(GlobalMinecraftProvider.NAME)
+    protected abstract Property<GlobalMinecraftProvider> getMinecraftService();
+
+    @TaskAction
+    public void run() {
+        var logger = getLogger();
+        for (var trace : getMinecraftService().get().getInputTraces(getProjectPath().get()).entrySet()) {
+            var name = trace.getKey();
+
+            var latest = InputTrace.read(trace.getValue());
+            if (latest == null) {
+                logger.lifecycle("{}: not built yet.", name);
+                continue;
+            }
+
+            var previous = InputTrace.read(InputTrace.getPreviousLocation(trace.getValue()));
+            if (previous == null) {
+                logger.lifecycle("{}: no previous build to compare against.", name);
+                continue;
+            }
+
+            var changes = latest.diff(previous);
+            if (changes.isEmpty()) {
+                logger.lifecycle("{}: inputs are unchanged.", name);
+            } else {
+                logger.lifecycle("{}: rebuilt as the following inputs changed:", name);
+                for (var change : changes) logger.lifecycle(" - {}", change);
+            }
+        }
+    }
+}
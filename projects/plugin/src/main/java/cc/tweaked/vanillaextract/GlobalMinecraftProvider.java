@@ -1,7 +1,10 @@
 package cc.tweaked.vanillaextract;
 
 import cc.tweaked.vanillaextract.core.download.BasicFileDownloader;
+import cc.tweaked.vanillaextract.core.inputs.ConcurrentInputCollector;
 import cc.tweaked.vanillaextract.core.inputs.FileFingerprint;
+import cc.tweaked.vanillaextract.core.inputs.HashingInputCollector;
+import cc.tweaked.vanillaextract.core.inputs.InputTrace;
 import cc.tweaked.vanillaextract.core.mappings.MappingProvider;
 import cc.tweaked.vanillaextract.core.mappings.MappingsFileProvider;
 import cc.tweaked.vanillaextract.core.minecraft.MinecraftProvider;
@@ -9,6 +12,7 @@ import cc.tweaked.vanillaextract.core.minecraft.MinecraftVersionProvider;
 import cc.tweaked.vanillaextract.core.minecraft.TransformedMinecraftProvider;
 import cc.tweaked.vanillaextract.core.minecraft.manifest.MinecraftVersion;
 import cc.tweaked.vanillaextract.core.util.Timing;
+import cc.tweaked.vanillaextract.utils.SingleFlight;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.services.BuildService;
@@ -22,6 +26,8 @@ import javax.annotation.concurrent.GuardedBy;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 
 /**
  * A global build service for downloading and providing Minecraft jars.
@@ -37,6 +43,10 @@ public abstract class GlobalMinecraftProvider implements BuildService<GlobalMine
 
     public static final String MAVEN_DIRECTORY = "maven";
 
+    private static final String PROVISIONED_FILE = "provisioned.json";
+
+    private static final String TRACE_DIRECTORY = "traces";
+
     public interface Parameters extends BuildServiceParameters {
         DirectoryProperty getGlobalGradleCache();
 
@@ -50,6 +60,7 @@ public abstract class GlobalMinecraftProvider implements BuildService<GlobalMine
     private final Path globalGradleCache;
     private final Path globalPluginCache;
     private final Path localMavenPath;
+    private final Path tracePath;
     private final boolean refresh;
 
     private final @GuardedBy("minecraftVersions") Map<String, MinecraftVersion> minecraftVersions = new HashMap<>();
@@ -58,6 +69,10 @@ public abstract class GlobalMinecraftProvider implements BuildService<GlobalMine
     private final MinecraftProvider minecraftProvider;
     private final MappingsFileProvider mappingsFileProvider;
     private final TransformedMinecraftProvider transformedMinecraftProvider;
+    private final ProvisionedCache provisioned;
+
+    private final SingleFlight<String, MinecraftProvider.SplitArtifacts> splitArtifacts = new SingleFlight<>();
+    private final SingleFlight<TransformKey, TransformedMinecraftProvider.TransformedJars> transformedJars = new SingleFlight<>();
 
     public GlobalMinecraftProvider() {
         var params = getParameters();
@@ -66,13 +81,15 @@ public abstract class GlobalMinecraftProvider implements BuildService<GlobalMine
         globalPluginCache = globalGradleCache.resolve("VanillaExtract");
         var localCache = params.getLocalCache().get().getAsFile().toPath();
         localMavenPath = localCache.resolve(MAVEN_DIRECTORY);
+        tracePath = localCache.resolve(TRACE_DIRECTORY);
         refresh = params.getRefresh().get();
 
         var downloader = new BasicFileDownloader();
         minecraftVersionProvider = new MinecraftVersionProvider(globalPluginCache, downloader);
         mappingsFileProvider = new MappingsFileProvider(globalPluginCache);
         minecraftProvider = new MinecraftProvider(downloader);
-        transformedMinecraftProvider = new TransformedMinecraftProvider(localMavenPath);
+        transformedMinecraftProvider = new TransformedMinecraftProvider(globalPluginCache, localMavenPath);
+        provisioned = new ProvisionedCache(localCache.resolve(PROVISIONED_FILE));
     }
 
     public MinecraftVersion getVersion(String version) throws IOException {
@@ -85,36 +102,142 @@ public abstract class GlobalMinecraftProvider implements BuildService<GlobalMine
         }
     }
 
-    public Everything provide(String version, MappingProvider mappings, List<Path> accessWideners, boolean refresh) throws IOException {
+    public Everything provide(
+        String projectPath, String version, MappingProvider mappings, List<Path> accessWideners,
+        TransformedMinecraftProvider.Options options, boolean refresh
+    ) throws IOException {
         long start = System.nanoTime();
-        Everything result = provideVanilla(version, mappings, accessWideners, refresh);
+
+        // If none of our inputs or outputs have changed since we last set up Minecraft, just reuse that result.
+        var key = getProvisionedKey(version, mappings, accessWideners);
+        if (!refresh && !this.refresh) {
+            var previous = provisioned.get(key);
+            if (previous != null) {
+                LOG.info("Minecraft {} is up-to-date ({}).", version, Timing.formatSince(start));
+                return previous;
+            }
+        }
+
+        Set<Path> files = new LinkedHashSet<>();
+        Everything result = provideVanilla(getTraceDirectory(projectPath), version, mappings, accessWideners, options, refresh, files);
+        provisioned.put(key, files, result);
+
         LOG.info("Set up Minecraft {} in {}.", version, Timing.formatSince(start));
         return result;
     }
 
-    private Everything provideVanilla(String version, MappingProvider mappings, List<Path> accessWideners, boolean refresh) throws IOException {
-        MinecraftProvider.SplitArtifacts minecraft;
-        synchronized (minecraftProvider) {
+    private Everything provideVanilla(
+        Path traceDirectory, String version, MappingProvider mappings, List<Path> accessWideners, TransformedMinecraftProvider.Options options,
+        boolean refresh, Set<Path> files
+    ) throws IOException {
+        var minecraft = splitArtifacts.get(version, refresh, () -> {
             var folder = globalPluginCache.resolve(version);
             var versionInfo = getVersion(version);
             var raw = minecraftProvider.provideRaw(folder, versionInfo.downloads(), versionInfo.libraries());
-            minecraft = minecraftProvider.provideSplit(folder, raw, refresh);
-        }
+            return minecraftProvider.provideSplit(folder, raw, traceDirectory, refresh);
+        });
+        files.add(minecraft.common().jar().path());
+        files.add(minecraft.client().jar().path());
+        for (var mapping : minecraft.mappings()) files.add(mapping.path());
+
+        FileFingerprint mappingPath;
+        List<FileFingerprint> fingerprintedAccessWideners;
+        String accessWidenersHash;
 
-        var resolvedMappings = mappings.resolve(new MappingProvider.Context(minecraft.mappings(), this::fingerprint));
-        var mappingPath = mappingsFileProvider.saveMappings(version, resolvedMappings);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Start fingerprinting our access wideners, sorted by path, in the background.
+            var accessWidenerInputs = new ConcurrentInputCollector(executor);
+            List<CompletableFuture<FileFingerprint>> pendingAccessWideners = new ArrayList<>(accessWideners.size());
+            for (var accessWidener : accessWideners.stream().sorted().toList()) {
+                pendingAccessWideners.add(accessWidenerInputs.addInput(accessWidener, this::fingerprint));
+            }
+            files.addAll(accessWideners);
 
-        List<FileFingerprint> fingerprintedAccessWideners = new ArrayList<>(accessWideners.size());
-        for (var accessWidener : accessWideners) fingerprintedAccessWideners.add(fingerprint(accessWidener));
-        fingerprintedAccessWideners.sort(Comparator.comparing(FileFingerprint::path));
+            // Meanwhile, resolve and write our mappings.
+            var resolvedMappings = mappings.resolve(new MappingProvider.Context(minecraft.mappings(), path -> {
+                files.add(path);
+                return fingerprint(path);
+            }));
+            mappingPath = mappingsFileProvider.saveMappings(version, resolvedMappings, traceDirectory);
+            files.add(mappingPath.path());
+
+            fingerprintedAccessWideners = new ArrayList<>(pendingAccessWideners.size());
+            for (var accessWidener : pendingAccessWideners) {
+                fingerprintedAccessWideners.add(ConcurrentInputCollector.join(accessWidener));
+            }
+
+            var accessWidenersDigest = new HashingInputCollector("Access wideners");
+            accessWidenerInputs.addTo(accessWidenersDigest);
+            accessWidenersHash = accessWidenersDigest.getDigest();
+        }
 
-        TransformedMinecraftProvider.TransformedJars jars;
-        synchronized (transformedMinecraftProvider) {
-            jars = transformedMinecraftProvider.provide(version, minecraft, mappingPath, fingerprintedAccessWideners, refresh || this.refresh);
+        var key = new TransformKey(version, mappingPath.digest(), accessWidenersHash);
+        var jars = transformedJars.get(key, refresh, () -> transformedMinecraftProvider.provide(
+            version, minecraft, mappingPath, fingerprintedAccessWideners, options, traceDirectory, refresh, this.refresh
+        ));
+        for (var jar : List.of(jars.common(), jars.clientOnly())) {
+            files.add(jar.path());
+            files.add(jar.resources());
+            files.add(jar.release().getPomLocation(localMavenPath));
         }
+
         return new Everything(jars, mappingPath.path());
     }
 
+    /**
+     * Get the locations of the {@linkplain InputTrace#record(Path, String, InputTrace) latest input traces} for each
+     * cached artifact.
+     * <p>
+     * Traces are only recorded when an artifact is rebuilt, and are stored separately for each project. This means
+     * other projects (which may use different mappings or access wideners) do not overwrite each other's history.
+     *
+     * @param projectPath The path of the project which requested these artifacts.
+     * @return The name of each artifact, and the location of its latest trace.
+     */
+    public Map<String, Path> getInputTraces(String projectPath) {
+        var directory = getTraceDirectory(projectPath);
+        Map<String, Path> traces = new LinkedHashMap<>();
+        traces.put("Split jars", InputTrace.getLatestLocation(directory, MinecraftProvider.SPLIT_TRACE));
+        traces.put("Mappings", InputTrace.getLatestLocation(directory, MappingsFileProvider.TRACE));
+        traces.put("Transformed jars", InputTrace.getLatestLocation(directory, TransformedMinecraftProvider.TRACE));
+        return traces;
+    }
+
+    private Path getTraceDirectory(String projectPath) {
+        var directory = tracePath.resolve("root");
+        for (var segment : projectPath.split(":")) {
+            if (!segment.isEmpty()) directory = directory.resolve(segment);
+        }
+        return directory;
+    }
+
+    /**
+     * Get the key for this set of inputs in our {@linkplain ProvisionedCache provisioned cache}.
+     *
+     * @param version        The Minecraft version.
+     * @param mappings       The mappings to use.
+     * @param accessWideners The access wideners to apply.
+     * @return The key for these inputs.
+     */
+    private static String getProvisionedKey(String version, MappingProvider mappings, List<Path> accessWideners) {
+        var key = new StringBuilder().append(version).append('\n').append(mappings);
+        for (var accessWidener : accessWideners.stream().map(x -> x.toAbsolutePath().toString()).sorted().toList()) {
+            key.append('\n').append(accessWidener);
+        }
+        return key.toString();
+    }
+
+    /**
+     * The inputs which uniquely identify a set of {@linkplain TransformedMinecraftProvider.TransformedJars transformed
+     * jars}.
+     *
+     * @param version        The Minecraft version.
+     * @param mappings       The digest of the mappings.
+     * @param accessWideners The combined digest of the access wideners.
+     */
+    private record TransformKey(String version, String mappings, String accessWideners) {
+    }
+
     public record Everything(
         TransformedMinecraftProvider.TransformedJars jars, Path mappings
     ) {
@@ -6,6 +6,7 @@ import cc.tweaked.vanillaextract.configurations.MinecraftConfiguration;
 import cc.tweaked.vanillaextract.core.mappings.MappingProvider;
 import cc.tweaked.vanillaextract.core.mappings.MojangMappings;
 import cc.tweaked.vanillaextract.core.mappings.ParchmentMappings;
+import cc.tweaked.vanillaextract.core.minecraft.TransformedMinecraftProvider;
 import cc.tweaked.vanillaextract.core.unpick.UnpickMetadata;
 import cc.tweaked.vanillaextract.utils.Dependencies;
 import org.gradle.api.Action;
@@ -50,6 +51,21 @@ public abstract class MinecraftExtensionImpl implements VanillaMinecraftExtensio
      */
     public abstract RegularFileProperty getUnpickMappings();
 
+    /**
+     * The number of threads used to remap Minecraft, set by {@link #remapperThreads(int)}.
+     */
+    public abstract Property<Integer> getRemapperThreads();
+
+    /**
+     * The number of threads used to compress the remapped jars, set by {@link #compressionThreads(int)}.
+     */
+    public abstract Property<Integer> getCompressionThreads();
+
+    /**
+     * The maximum amount of class data (in bytes) to remap at once, set by {@link #remapMemoryLimit(int)}.
+     */
+    public abstract Property<Long> getRemapMemoryLimit();
+
     @Inject
     protected abstract Project getProject();
 
@@ -58,6 +74,22 @@ public abstract class MinecraftExtensionImpl implements VanillaMinecraftExtensio
         getAccessWideners().finalizeValueOnRead();
         getMappings().convention(MojangMappings.get()).finalizeValueOnRead();
         getUnpickMappings().finalizeValueOnRead();
+
+        var defaultOptions = TransformedMinecraftProvider.Options.defaults();
+        getRemapperThreads().convention(defaultOptions.remapperThreads()).finalizeValueOnRead();
+        getCompressionThreads().convention(defaultOptions.compressionThreads()).finalizeValueOnRead();
+        getRemapMemoryLimit().convention(defaultOptions.remapMemoryLimit()).finalizeValueOnRead();
+    }
+
+    /**
+     * Get the options used to transform Minecraft.
+     *
+     * @return The current transformation options.
+     */
+    public Provider<TransformedMinecraftProvider.Options> getTransformOptions() {
+        return getProject().getProviders().provider(() -> new TransformedMinecraftProvider.Options(
+            getRemapperThreads().get(), getCompressionThreads().get(), getRemapMemoryLimit().get()
+        ));
     }
 
     @Override
@@ -104,6 +136,21 @@ public abstract class MinecraftExtensionImpl implements VanillaMinecraftExtensio
         });
     }
 
+    @Override
+    public void remapperThreads(int threads) {
+        getRemapperThreads().set(threads);
+    }
+
+    @Override
+    public void compressionThreads(int threads) {
+        getCompressionThreads().set(threads);
+    }
+
+    @Override
+    public void remapMemoryLimit(int megabytes) {
+        getRemapMemoryLimit().set((long) megabytes << 20);
+    }
+
     @Override
     public void unpick(Object dependencySpec) {
         var project = getProject();
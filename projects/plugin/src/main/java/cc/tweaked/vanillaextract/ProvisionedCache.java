@@ -0,0 +1,154 @@
+package cc.tweaked.vanillaextract;
+
+import cc.tweaked.vanillaextract.core.MavenRelease;
+import cc.tweaked.vanillaextract.core.minecraft.TransformedMinecraftProvider;
+import cc.tweaked.vanillaextract.core.util.MoreFiles;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A persistent record of what {@link GlobalMinecraftProvider#provide} last returned for each set of inputs.
+ * <p>
+ * Alongside the result, we store the size and modification time of every file which was read or written while
+ * providing it. If none of these files have changed, we can reuse the previous result without reading the version
+ * manifest, fingerprinting any inputs, or checking the individual outputs exist.
+ */
+final class ProvisionedCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ProvisionedCache.class);
+
+    /**
+     * The version of this file. This should be bumped whenever the format, or how the jars are produced, changes.
+     */
+    private static final int FORMAT = 2;
+
+    private final Path location;
+    private @GuardedBy("this") @Nullable Map<String, Entry> entries;
+
+    ProvisionedCache(Path location) {
+        this.location = location;
+    }
+
+    /**
+     * Get the previously provided artifacts for a set of inputs, if none of their files have changed.
+     *
+     * @param key A key uniquely identifying the inputs to {@link GlobalMinecraftProvider#provide}.
+     * @return The previous result, or {@code null} if not available or out-of-date.
+     */
+    synchronized GlobalMinecraftProvider.@Nullable Everything get(String key) {
+        var entry = getEntries().get(key);
+        if (entry == null) return null;
+
+        for (var file : entry.files()) {
+            if (!file.equals(FileStat.of(Path.of(file.path())))) {
+                LOG.info("{} has changed since Minecraft was last set up.", file.path());
+                return null;
+            }
+        }
+
+        return new GlobalMinecraftProvider.Everything(
+            new TransformedMinecraftProvider.TransformedJars(entry.common().toJar(), entry.clientOnly().toJar()),
+            Path.of(entry.mappings())
+        );
+    }
+
+    /**
+     * Save the result of {@link GlobalMinecraftProvider#provide}.
+     *
+     * @param key    A key uniquely identifying the inputs to {@link GlobalMinecraftProvider#provide}.
+     * @param files  The files that were used to produce this result. This should include both the input files and
+     *               any produced outputs.
+     * @param result The provided artifacts.
+     */
+    synchronized void put(String key, Collection<Path> files, GlobalMinecraftProvider.Everything result) {
+        List<FileStat> stats = new ArrayList<>(files.size());
+        for (var file : files) {
+            var stat = FileStat.of(file);
+            if (stat == null) return;
+            stats.add(stat);
+        }
+
+        var entry = new Entry(
+            stats, result.mappings().toString(),
+            Jar.of(result.jars().common()), Jar.of(result.jars().clientOnly())
+        );
+
+        var entries = getEntries();
+        if (entry.equals(entries.put(key, entry))) return;
+
+        try {
+            MoreFiles.createParentDirectories(location);
+            try (var scratch = MoreFiles.scratch(location)) {
+                MoreFiles.writeJson(scratch.path(), new Contents(FORMAT, entries));
+                scratch.commit();
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to save {}.", location, e);
+        }
+    }
+
+    @GuardedBy("this")
+    private Map<String, Entry> getEntries() {
+        if (entries != null) return entries;
+
+        Map<String, Entry> entries = new HashMap<>();
+        if (MoreFiles.exists(location)) {
+            try {
+                var contents = MoreFiles.readJson(location, Contents.class);
+                if (contents != null && contents.format() == FORMAT && contents.entries() != null) {
+                    entries.putAll(contents.entries());
+                }
+            } catch (IOException | JsonParseException e) {
+                LOG.warn("Failed to read {}.", location, e);
+            }
+        }
+
+        return this.entries = entries;
+    }
+
+    private record Contents(int format, Map<String, Entry> entries) {
+    }
+
+    private record Entry(List<FileStat> files, String mappings, Jar common, Jar clientOnly) {
+    }
+
+    private record Jar(String path, String resources, MavenRelease release) {
+        static Jar of(TransformedMinecraftProvider.TransformedJar jar) {
+            return new Jar(jar.path().toString(), jar.resources().toString(), jar.release());
+        }
+
+        TransformedMinecraftProvider.TransformedJar toJar() {
+            return new TransformedMinecraftProvider.TransformedJar(Path.of(path), Path.of(resources), release);
+        }
+    }
+
+    /**
+     * The file metadata we use to determine if a file has changed.
+     *
+     * @param path     The absolute path to the file.
+     * @param size     The file's size.
+     * @param modified The file's modification time, in milliseconds.
+     */
+    private record FileStat(String path, long size, long modified) {
+        static @Nullable FileStat of(Path path) {
+            try {
+                var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new FileStat(path.toAbsolutePath().toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -42,27 +42,47 @@ public abstract class VanillaPlugin extends CommonPlugin {
 
         We can then use this property to derive our dependencies then add them to the configuration with addProvider.
         */
+        var options = extension.getTransformOptions();
+        var projectPath = project.getPath();
         var minecraft = Providers.cacheViaProperty(project.getObjects(), TransformedMinecraftProvider.TransformedJars.class, Providers.zip(
             service, extension.getVersion(), extension.getMappings(), extension.getAccessWideners().getElements(),
-            VanillaPlugin::configureMinecraft
+            (s, version, mappings, accessWideners) -> configureMinecraft(s, projectPath, version, mappings, accessWideners, options.get())
         ));
 
         // Set up the Minecraft configurations, and add our generated jars to their appropriate config.
         var setup = new MinecraftSetup(project);
         setup.setup();
-        setup.addDependency(MinecraftConfiguration.COMMON, minecraft.map(x -> x.common().release().coordinate()), true, true);
-        setup.addDependency(MinecraftConfiguration.CLIENT_ONLY, minecraft.map(x -> x.clientOnly().release().coordinate()), true, true);
+        var common = minecraft.map(TransformedMinecraftProvider.TransformedJars::common);
+        setup.addMinecraftJar(
+            MinecraftConfiguration.COMMON,
+            common.map(x -> x.release().coordinate()), common.map(x -> x.resourcesArtifact().toDependencyString())
+        );
+        var clientOnly = minecraft.map(TransformedMinecraftProvider.TransformedJars::clientOnly);
+        setup.addMinecraftJar(
+            MinecraftConfiguration.CLIENT_ONLY,
+            clientOnly.map(x -> x.release().coordinate()), clientOnly.map(x -> x.resourcesArtifact().toDependencyString())
+        );
 
         // Set up the decompile task, with our two jars.
         Decompile.setup(project, extension, List.of(
             new Decompile.Target(MinecraftConfiguration.COMMON, minecraft.map(x -> x.common().path().toFile())),
             new Decompile.Target(MinecraftConfiguration.CLIENT_ONLY, minecraft.map(x -> x.clientOnly().path().toFile()))
         ));
+
+        // And a task to explain why Minecraft was rebuilt.
+        project.getTasks().register("explainMinecraftCache", ExplainCacheTask.class, task -> {
+            task.setDescription("Explain which inputs changed the last time Minecraft was rebuilt.");
+            task.getProjectPath().set(project.getPath());
+            task.getProjectPath().disallowChanges();
+        });
     }
 
-    private static TransformedMinecraftProvider.TransformedJars configureMinecraft(GlobalMinecraftProvider service, String version, MappingProvider mappings, Set<FileSystemLocation> accessWideners) {
+    private static TransformedMinecraftProvider.TransformedJars configureMinecraft(
+        GlobalMinecraftProvider service, String projectPath, String version, MappingProvider mappings, Set<FileSystemLocation> accessWideners,
+        TransformedMinecraftProvider.Options options
+    ) {
         try {
-            return service.provide(version, mappings, accessWideners.stream().map(x -> x.getAsFile().toPath()).toList(), false).jars();
+            return service.provide(projectPath, version, mappings, accessWideners.stream().map(x -> x.getAsFile().toPath()).toList(), options, false).jars();
         } catch (Exception e) {
             throw new GradleException("Failed to setup Minecraft jars", e);
         }
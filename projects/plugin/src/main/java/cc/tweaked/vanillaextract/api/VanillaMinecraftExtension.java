@@ -36,6 +36,34 @@ public interface VanillaMinecraftExtension {
      */
     void mappings(Action<? super MappingsConfiguration> configure);
 
+    /**
+     * Set the number of threads used to remap Minecraft. This defaults to the number of available processors.
+     *
+     * @param threads The number of remapper threads.
+     */
+    void remapperThreads(int threads);
+
+    /**
+     * Set the number of threads used to compress the remapped Minecraft jars. This defaults to the number of
+     * available processors.
+     *
+     * @param threads The number of compression threads.
+     */
+    void compressionThreads(int threads);
+
+    /**
+     * Limit how much memory is used when remapping Minecraft.
+     * <p>
+     * By default, all Minecraft classes are remapped at once. If the classes still to be remapped are larger than this
+     * limit, they are instead remapped in several smaller batches. This reduces peak memory usage (useful on CI
+     * machines with little memory), but makes remapping slower.
+     * <p>
+     * This does not include Minecraft's mappings, which are always loaded in full.
+     *
+     * @param megabytes The approximate amount of class data to remap at once, in megabytes.
+     */
+    void remapMemoryLimit(int megabytes);
+
     /**
      * Un-inline constants when decompiling using Fabric's Unpick tool.
      * <p>
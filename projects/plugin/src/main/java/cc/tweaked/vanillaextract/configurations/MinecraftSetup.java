@@ -39,6 +39,10 @@ import static cc.tweaked.vanillaextract.GradleUtils.lazyNamed;
  * <ul>
  *     <li>{@link #addMinecraftDependency(SourceSet, MinecraftConfiguration)}: adds the Minecraft jar to other source sets.</li>
  *     <li>
+ *         {@link #addMinecraftJar(MinecraftConfiguration, Provider, Provider)}: adds a transformed Minecraft jar (its classes at
+ *         compile time, and classes and resources at runtime) to one of our configurations.
+ *     </li>
+ *     <li>
  *         {@link #extendClasspath(SourceSet, SourceSet)}: Perform some magic tricks to inherit dependencies between
  *         source sets.
  *     </li>
@@ -102,6 +106,22 @@ public class MinecraftSetup {
         if (runtime) project.getDependencies().addProvider(config.getRuntimeConfigurationName(), dependency);
     }
 
+    /**
+     * Add one of our transformed Minecraft jars to a configuration.
+     * <p>
+     * Only the classes are added to the compile classpath, as the resources are not needed for compilation (and are
+     * much larger). Both the classes and resources are added to the runtime classpath.
+     *
+     * @param config    The configuration to add this jar to.
+     * @param classes   The dependency containing Minecraft's classes. This should be a provider with any dependency
+     *                  notation.
+     * @param resources The dependency containing Minecraft's resources.
+     */
+    public void addMinecraftJar(MinecraftConfiguration config, Provider<?> classes, Provider<?> resources) {
+        addDependency(config, classes, true, true);
+        addDependency(config, resources, false, true);
+    }
+
     /**
      * Creates a new {@linkplain #CLIENT_SOURCE_SET_NAME "client"} source set.
      */
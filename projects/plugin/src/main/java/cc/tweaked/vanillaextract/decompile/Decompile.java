@@ -32,6 +32,9 @@ public final class Decompile {
         // Finally create our decompile task. This largely involves binding all our options from the extension to the
         // task.
         project.getTasks().register("decompile", DecompileTask.class, task -> {
+            task.getProjectPath().set(project.getPath());
+            task.getProjectPath().disallowChanges();
+
             task.getVersion().set(extension.getVersion());
             task.getVersion().disallowChanges();
 
@@ -41,6 +44,9 @@ public final class Decompile {
             task.getMappings().set(extension.getMappings());
             task.getMappings().disallowChanges();
 
+            task.getTransformOptions().set(extension.getTransformOptions());
+            task.getTransformOptions().disallowChanges();
+
             task.getUnpickMappings().set(extension.getUnpickMappings());
             task.getUnpickMappings().disallowChanges();
 
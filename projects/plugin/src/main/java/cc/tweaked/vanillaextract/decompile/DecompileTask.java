@@ -3,6 +3,7 @@ package cc.tweaked.vanillaextract.decompile;
 import cc.tweaked.vanillaextract.GlobalMinecraftProvider;
 import cc.tweaked.vanillaextract.api.VanillaMinecraftExtension;
 import cc.tweaked.vanillaextract.core.mappings.MappingProvider;
+import cc.tweaked.vanillaextract.core.minecraft.TransformedMinecraftProvider;
 import cc.tweaked.vanillaextract.core.unpick.UnpickProvider;
 import cc.tweaked.vanillaextract.core.util.MoreFiles;
 import cc.tweaked.vanillaextract.core.util.Timing;
@@ -84,6 +85,13 @@ public abstract class DecompileTask extends DefaultTask {
     @InputFiles
     public abstract ConfigurableFileCollection getAccessWideners();
 
+    /**
+     * Options controlling how Minecraft is transformed. This is bound to {@linkplain
+     * cc.tweaked.vanillaextract.MinecraftExtensionImpl#getTransformOptions() the extension-configured options}.
+     */
+    @Internal
+    public abstract Property<TransformedMinecraftProvider.Options> getTransformOptions();
+
     // endregion
 
     // region Unpick configuration
@@ -124,6 +132,14 @@ public abstract class DecompileTask extends DefaultTask {
 
     // endregion
 
+    /**
+     * The path of the current project, used to record why Minecraft was rebuilt.
+     *
+     * @see cc.tweaked.vanillaextract.ExplainCacheTask
+     */
+    @Internal
+    public abstract Property<String> getProjectPath();
+
     // region Services
 
     @Inject
@@ -166,9 +182,11 @@ public abstract class DecompileTask extends DefaultTask {
         // This is a bit of a hack, but we regenerate our transformed jars, to ensure we apply line maps to the
         // "original" jar, rather than an already line-mapped jar.
         var everything = minecraft.provide(
+            getProjectPath().get(),
             getVersion().get(),
             getMappings().get(),
             getAccessWideners().getFiles().stream().map(File::toPath).toList(),
+            getTransformOptions().get(),
             true
         );
 
@@ -0,0 +1,89 @@
+package cc.tweaked.vanillaextract.utils;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoises the result of some expensive computation, ensuring that each key is only computed once at a time.
+ * <p>
+ * Concurrent requests for the same key wait for the in-progress computation, rather than repeating it. Requests for
+ * different keys run in parallel.
+ *
+ * @param <K> The type of keys.
+ * @param <V> The type of computed values.
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> results = new ConcurrentHashMap<>();
+
+    /**
+     * Get the value for a key, computing it if needed.
+     * <p>
+     * Failed computations are not cached, and so will be retried by the next request.
+     *
+     * @param key     The key to look up.
+     * @param refresh Ignore any previously computed value and compute it again. This still waits for any in-progress
+     *                computation to finish first.
+     * @param compute The function to compute this value.
+     * @return The computed value.
+     * @throws IOException If the computation failed.
+     */
+    public V get(K key, boolean refresh, Computation<V> compute) throws IOException {
+        var future = new CompletableFuture<V>();
+        var existing = refresh ? results.put(key, future) : results.putIfAbsent(key, future);
+
+        if (existing != null) {
+            if (!refresh) return await(existing);
+
+            // Wait for the previous computation to finish, ignoring whether it succeeded or not.
+            try {
+                existing.join();
+            } catch (CompletionException ignored) {
+            }
+        }
+
+        try {
+            var value = compute.compute();
+            future.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            results.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (!(cause instanceof IOException || cause instanceof RuntimeException || cause instanceof Error)) throw e;
+
+            // Rethrow the original exception, so callers can still catch it by type. We attach a suppressed exception
+            // so there's a stack trace for this thread too.
+            cause.addSuppressed(new Exception("Waited for by " + Thread.currentThread().getName()));
+            if (cause instanceof IOException ioException) throw ioException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * A function which computes a value.
+     *
+     * @param <V> The type of the computed value.
+     */
+    @FunctionalInterface
+    public interface Computation<V> {
+        /**
+         * Compute the value.
+         *
+         * @return The computed value.
+         * @throws IOException If the value could not be computed.
+         */
+        V compute() throws IOException;
+    }
+}